@@ -0,0 +1,134 @@
+package benchmark;
+
+import model.Checkpoint;
+import model.Individual;
+import model.Neat;
+import model.NeatConfig;
+import model.Species;
+import model.genes.Genome;
+import model.network.Approximation;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks saving and restoring a run, for different configurations.
+ * The setup first checks the round trip: a restored run must evolve exactly like the original one, with the same
+ * genes, scores and species, or the benchmark fails.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CheckpointBenchmark {
+
+    private static final int INPUTS = 2;
+    private static final int OUTPUTS = 1;
+    private static final int GENERATIONS = 10;
+    private static final double[] SEQUENCE = {1, 0, 0, 1, 1, 0, 1, 0};
+
+    @Param({"feedForward", "recurrent", "targetSpecies", "activations", "table"})
+    public String config;
+
+    @Param({"1000"})
+    public int population;
+
+    private Neat neat;
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        neat = new Neat(INPUTS, OUTPUTS, population, config(config), new Neat.Options().seed(42));
+        evolve(neat, GENERATIONS);
+        file = Files.createTempFile("neat", ".checkpoint");
+        Checkpoint.save(neat, file);
+
+        Neat restored = Checkpoint.restore(file);
+        evolve(neat, GENERATIONS);
+        evolve(restored, GENERATIONS);
+        if (!describe(neat).equals(describe(restored))) {
+            throw new IllegalStateException("The restored " + config + " run evolved differently");
+        }
+        Checkpoint.save(neat, file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Path save() throws IOException {
+        Checkpoint.save(neat, file);
+        return file;
+    }
+
+    @Benchmark
+    public Neat restore() throws IOException {
+        return Checkpoint.restore(file);
+    }
+
+    private static NeatConfig config(String name) {
+        return switch (name) {
+            case "feedForward" -> NeatConfig.DEFAULT;
+            case "recurrent" -> NeatConfig.DEFAULT.withRecurrent(true);
+            case "targetSpecies" -> NeatConfig.DEFAULT.withTargetSpeciesCount(10, 0.3);
+            case "activations" -> NeatConfig.DEFAULT.withMutateActivationRate(0.1);
+            case "table" -> NeatConfig.DEFAULT.withMutateActivationRate(0.1).withApproximation(Approximation.TABLE);
+            default -> throw new IllegalArgumentException(name);
+        };
+    }
+
+    /**
+     * Scores how well the network repeats the previous element of a sequence, which only a recurrent network can.
+     */
+    private static double fitness(Individual individual) {
+        double[] inputs = new double[INPUTS];
+        double[] outputs = new double[OUTPUTS];
+        double score = 0;
+        for (int i = 1; i < SEQUENCE.length; i++) {
+            inputs[0] = SEQUENCE[i];
+            inputs[1] = SEQUENCE[i - 1];
+            individual.calculateOutput(inputs, outputs);
+            score += 1 - Math.abs(SEQUENCE[i - 1] - outputs[0]);
+        }
+        return score;
+    }
+
+    private static void evolve(Neat neat, int generations) {
+        for (int g = 0; g < generations; g++) {
+            neat.evaluatePopulation(CheckpointBenchmark::fitness);
+            neat.evolvePopulation();
+        }
+        neat.evaluatePopulation(CheckpointBenchmark::fitness);
+    }
+
+    /**
+     * @return The genes and scores of the individuals and the ids and members of the species, in order.
+     */
+    private static String describe(Neat neat) {
+        StringBuilder description = new StringBuilder();
+        for (Individual individual : neat.getIndividuals()) {
+            Genome genome = individual.getGenome();
+            description.append(individual.getScore()).append(':');
+            for (int c = 0; c < genome.getConnectionCount(); c++) {
+                description.append(' ').append(genome.getInnovation(c)).append('=').append(genome.getWeight(c))
+                        .append(genome.isEnabled(c) ? '+' : '-');
+            }
+            for (int n = 0; n < genome.getNodeCount(); n++) {
+                description.append(' ').append(genome.getNodeId(n)).append(genome.getActivation(n));
+            }
+            description.append('\n');
+        }
+        for (Species species : neat.getSpecies()) {
+            description.append(species.getId()).append(' ').append(neat.getIndividuals().indexOf(species.getChampion()))
+                    .append(' ').append(species.size()).append('\n');
+        }
+        return description.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package benchmark;
+
+import model.Neat;
+import model.NeatConfig;
+import model.genes.Genome;
+import model.network.Network;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the operations on a single genome, for genomes of different sizes.
+ * Run with {@code -prof gc} to see the allocation rate next to the throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GenomeBenchmark {
+
+    private static final int INPUTS = 8;
+    private static final int OUTPUTS = 4;
+    private static final int COPIES = 1000;
+
+    @Param({"10", "100", "1000"})
+    public int genomeSize;
+
+    private SplittableRandom random;
+    private Genome genome;
+    private Genome relative;
+    private double[] inputs;
+    private double[] outputs;
+
+    @Setup
+    public void setup() {
+        random = new SplittableRandom(42);
+        Neat neat = new Neat(INPUTS, OUTPUTS, 1, NeatConfig.DEFAULT, new Neat.Options().seed(42));
+        genome = Genomes.grow(neat.emptyGenome(), genomeSize, random);
+
+        // A descendant of the genome with a few structural and weight changes
+        relative = Genome.crossover(genome, genome, random);
+        for (int i = 0; i < Math.max(1, genomeSize / 10); i++) {
+            relative.mutate(random);
+        }
+
+        inputs = new double[INPUTS];
+        for (int i = 0; i < INPUTS; i++) {
+            inputs[i] = random.nextDouble();
+        }
+        outputs = new double[OUTPUTS];
+        genome.calculateOutput(inputs, outputs);
+    }
+
+    @Benchmark
+    public double[] calculateOutput() {
+        genome.calculateOutput(inputs, outputs);
+        return outputs;
+    }
+
+    @Benchmark
+    public Network compile() {
+        return Network.compile(genome);
+    }
+
+    @Benchmark
+    public double distance() {
+        return genome.distance(relative);
+    }
+
+    @Benchmark
+    public Genome crossover() {
+        return Genome.crossover(genome, relative, random);
+    }
+
+    /**
+     * A pool of fresh copies of the genome, rebuilt before every iteration, each of them mutated once per iteration so
+     * that the genomes do not grow during the run.
+     */
+    @State(Scope.Thread)
+    public static class MutationState {
+        private final Genome[] copies = new Genome[COPIES];
+        private int next;
+
+        @Setup(Level.Iteration)
+        public void copy(GenomeBenchmark benchmark) {
+            for (int i = 0; i < COPIES; i++) {
+                copies[i] = Genome.crossover(benchmark.genome, benchmark.genome, benchmark.random);
+            }
+            next = 0;
+        }
+    }
+
+    /**
+     * Mutates the next copy of the pool. The score is the time of a batch mutating every copy once, since a single
+     * mutation is too short to be timed on its own.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 20, batchSize = COPIES)
+    @Measurement(iterations = 20, batchSize = COPIES)
+    public Genome mutate(MutationState state) {
+        Genome copy = state.copies[state.next++];
+        copy.mutate(random);
+        return copy;
+    }
+}
@@ -0,0 +1,33 @@
+package benchmark;
+
+import model.genes.Genome;
+
+import java.util.random.RandomGenerator;
+
+/**
+ * Builds genomes of a given size for the benchmarks.
+ */
+final class Genomes {
+
+    private Genomes() {
+    }
+
+    /**
+     * Adds links and nodes to a genome until it has at least the given number of connections.
+     * Splitting a connection always adds one, so this ends even once every possible link exists.
+     * @param genome The genome to grow.
+     * @param connections The number of connections to reach.
+     * @param random The generator deciding the mutations.
+     * @return The genome.
+     */
+    static Genome grow(Genome genome, int connections, RandomGenerator random) {
+        while (genome.getConnectionCount() < connections) {
+            if (genome.getConnectionCount() > 0 && random.nextDouble() < 0.2) {
+                genome.mutateNode(random);
+            } else {
+                genome.mutateLink(random);
+            }
+        }
+        return genome;
+    }
+}
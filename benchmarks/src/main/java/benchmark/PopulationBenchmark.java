@@ -0,0 +1,96 @@
+package benchmark;
+
+import model.Individual;
+import model.Neat;
+import model.NeatConfig;
+import model.Species;
+import model.genes.Genome;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Benchmarks the operations on a whole population, for different population and genome sizes.
+ * Run with {@code -prof gc} to see the allocation rate next to the throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PopulationBenchmark {
+
+    private static final int INPUTS = 8;
+    private static final int OUTPUTS = 4;
+    private static final int GENERATIONS = 10;
+
+    @Param({"100", "1000", "10000"})
+    public int population;
+
+    @Param({"10", "100"})
+    public int genomeSize;
+
+    private SplittableRandom random;
+    private Neat neat;
+
+    /**
+     * Rebuilds the population before every iteration, so that its genomes keep about the size given by the parameter.
+     */
+    @Setup(Level.Iteration)
+    public void setup() {
+        random = new SplittableRandom(42);
+        neat = new Neat(INPUTS, OUTPUTS, population, NeatConfig.DEFAULT, new Neat.Options().seed(42));
+        // Descendants of a common ancestor, so that the population forms species as an evolved one would
+        Genome ancestor = Genomes.grow(neat.emptyGenome(), genomeSize, random);
+        for (Individual individual : neat.getIndividuals()) {
+            individual.setGenome(Genome.crossover(ancestor, ancestor, random));
+            individual.getGenome().mutate(random);
+            individual.setScore(random.nextDouble());
+        }
+    }
+
+    /**
+     * One generation: scoring with a trivial fitness function, then speciation, elimination, reproduction and mutation.
+     * Each iteration evolves a fresh population for a fixed batch of generations and the score is the time of the
+     * whole batch, as an unbounded number of generations would grow the genomes past the size being measured.
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 5, batchSize = GENERATIONS)
+    @Measurement(iterations = 10, batchSize = GENERATIONS)
+    public Neat evolvePopulation() {
+        neat.evaluatePopulation(individual -> ThreadLocalRandom.current().nextDouble());
+        neat.evolvePopulation();
+        return neat;
+    }
+
+    /**
+     * A species holding the whole population, rebuilt before every invocation because killing removes members.
+     */
+    @State(Scope.Thread)
+    public static class SpeciesState {
+        private Species species;
+
+        @Setup(Level.Invocation)
+        public void fill(PopulationBenchmark benchmark) {
+            species = null;
+            for (Individual individual : benchmark.neat.getIndividuals()) {
+                individual.setScore(benchmark.random.nextDouble());
+                if (species == null) {
+                    species = new Species(1, individual);
+                } else {
+                    species.addIndividual(individual);
+                }
+            }
+        }
+    }
+
+    @Benchmark
+    public Species kill(SpeciesState state) {
+        state.species.kill(100 - NeatConfig.DEFAULT.survivalPercentage());
+        return state.species;
+    }
+}
@@ -0,0 +1,526 @@
+package model;
+
+import model.genes.Activation;
+import model.genes.Genome;
+import model.genes.NodeGene;
+import model.genes.NodeType;
+import model.network.Approximation;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.random.RandomGeneratorFactory;
+
+/**
+ * A snapshot of a NEAT run between two generations, which can be saved to a file and restored.
+ * <p>
+ * A snapshot holds the population with its scores, the species with their champions, the nodes and the innovation
+ * history of the registry, the configuration with the current compatibility threshold and the seed of the next
+ * generation, so a restored run evolves exactly like the original one would have. The activations of recurrent
+ * networks are not saved: {@link Neat#evaluatePopulation} resets every network before scoring it, so they never
+ * outlive a fitness call. Taking a snapshot only copies primitive arrays, and the snapshot no longer depends on the
+ * run, so it can be written by another thread while the run goes on.
+ * <p>
+ * The file is a little-endian binary format. Counts, ids and innovation numbers are unsigned varints, the sorted ids
+ * of a genome being stored as the differences between consecutive ids, weights and scores are raw doubles and the
+ * states of the connections are packed into bits. Files are written to a temporary file first, so a crash while
+ * writing leaves the previous snapshot intact, and are memory-mapped when restored, which limits them to 2 GB.
+ */
+public final class Checkpoint {
+
+    private static final int MAGIC = 0x5441454E;
+    private static final int VERSION = 7;
+
+    private final int inputSize;
+    private final int outputSize;
+    private final int generation;
+    private final NeatConfig config;
+    private final double compatibilityThreshold;
+    private final String generator;
+    private final long seed;
+
+    private final byte[] nodeTypes;
+    private final double[] nodeX;
+    private final double[] nodeY;
+    private final long[] connectionKeys;
+    private final int[] splits;
+
+    /**
+     * The genes of the whole population, the genes of individual i being between start[i] and start[i + 1].
+     */
+    private final double[] scores;
+    private final int[] nodeStart;
+    private final int[] nodeIds;
+    private final byte[] activations;
+    private final int[] connectionStart;
+    private final int[] innovations;
+    private final double[] weights;
+    private final boolean[] enabled;
+
+    /**
+     * The species, by index in the population, the members of species s being between memberStart[s] and
+     * memberStart[s + 1].
+     */
+    private final int[] speciesIds;
+    /**
+     * The id of the last species created by the run, from which the ids of its next species follow.
+     */
+    private final int lastSpeciesId;
+    private final double[] speciesScores;
+    private final int[] champions;
+    private final int[] memberStart;
+    private final int[] members;
+
+    private Checkpoint(int inputSize, int outputSize, int generation, NeatConfig config,
+                       double compatibilityThreshold, String generator, long seed,
+                       byte[] nodeTypes, double[] nodeX, double[] nodeY, long[] connectionKeys, int[] splits,
+                       double[] scores, int[] nodeStart, int[] nodeIds, byte[] activations,
+                       int[] connectionStart, int[] innovations, double[] weights, boolean[] enabled,
+                       int[] speciesIds, int lastSpeciesId, double[] speciesScores, int[] champions,
+                       int[] memberStart, int[] members) {
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.generation = generation;
+        this.config = config;
+        this.compatibilityThreshold = compatibilityThreshold;
+        this.generator = generator;
+        this.seed = seed;
+        this.nodeTypes = nodeTypes;
+        this.nodeX = nodeX;
+        this.nodeY = nodeY;
+        this.connectionKeys = connectionKeys;
+        this.splits = splits;
+        this.scores = scores;
+        this.nodeStart = nodeStart;
+        this.nodeIds = nodeIds;
+        this.activations = activations;
+        this.connectionStart = connectionStart;
+        this.innovations = innovations;
+        this.weights = weights;
+        this.enabled = enabled;
+        this.speciesIds = speciesIds;
+        this.lastSpeciesId = lastSpeciesId;
+        this.speciesScores = speciesScores;
+        this.champions = champions;
+        this.memberStart = memberStart;
+        this.members = members;
+    }
+
+    /**
+     * Takes a snapshot of a run. Must be called between two generations, from the thread evolving the run.
+     * @param neat The run.
+     * @return The snapshot.
+     */
+    public static Checkpoint capture(Neat neat) {
+        InnovationRegistry registry = neat.getRegistry();
+        int nodeCount = registry.getNodeCount();
+        byte[] nodeTypes = new byte[nodeCount];
+        double[] nodeX = new double[nodeCount];
+        double[] nodeY = new double[nodeCount];
+        for (int i = 0; i < nodeCount; i++) {
+            NodeGene node = registry.getNode(i + 1);
+            nodeTypes[i] = (byte) (node.getType() == null ? -1 : node.getType().ordinal());
+            nodeX[i] = node.getX();
+            nodeY[i] = node.getY();
+        }
+
+        List<Individual> individuals = neat.getIndividuals();
+        int size = individuals.size();
+        Map<Individual, Integer> indices = new IdentityHashMap<>(size);
+        double[] scores = new double[size];
+        int[] nodeStart = new int[size + 1];
+        int[] connectionStart = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            Individual individual = individuals.get(i);
+            indices.put(individual, i);
+            scores[i] = individual.getScore();
+            nodeStart[i + 1] = nodeStart[i] + individual.getGenome().getNodeCount();
+            connectionStart[i + 1] = connectionStart[i] + individual.getGenome().getConnectionCount();
+        }
+
+        int[] nodeIds = new int[nodeStart[size]];
+        byte[] activations = new byte[nodeStart[size]];
+        int[] innovations = new int[connectionStart[size]];
+        double[] weights = new double[connectionStart[size]];
+        boolean[] enabled = new boolean[connectionStart[size]];
+        for (int i = 0; i < size; i++) {
+            Genome genome = individuals.get(i).getGenome();
+            for (int n = 0, j = nodeStart[i]; j < nodeStart[i + 1]; n++, j++) {
+                nodeIds[j] = genome.getNodeId(n);
+                activations[j] = (byte) genome.getActivation(n).ordinal();
+            }
+            for (int c = 0, j = connectionStart[i]; j < connectionStart[i + 1]; c++, j++) {
+                innovations[j] = genome.getInnovation(c);
+                weights[j] = genome.getWeight(c);
+                enabled[j] = genome.isEnabled(c);
+            }
+        }
+
+        List<Species> species = neat.getSpecies();
+        int[] speciesIds = new int[species.size()];
+        double[] speciesScores = new double[species.size()];
+        int[] champions = new int[species.size()];
+        int[] memberStart = new int[species.size() + 1];
+        for (int s = 0; s < species.size(); s++) {
+            memberStart[s + 1] = memberStart[s] + species.get(s).size();
+        }
+        int[] members = new int[memberStart[species.size()]];
+        for (int s = 0; s < species.size(); s++) {
+            Species sp = species.get(s);
+            speciesIds[s] = sp.getId();
+            speciesScores[s] = sp.getScore();
+            champions[s] = indices.getOrDefault(sp.getChampion(), -1);
+            int j = memberStart[s];
+            for (Individual member : sp.getIndividuals()) {
+                members[j++] = indices.get(member);
+            }
+        }
+
+        return new Checkpoint(neat.getInputSize(), neat.getOutputSize(), neat.getGeneration(), neat.getConfig(),
+                neat.getCompatibilityThreshold(), neat.getGenerators().name(), neat.getSeed(), nodeTypes, nodeX, nodeY,
+                registry.getConnectionKeys(), registry.getSplits(), scores, nodeStart, nodeIds, activations,
+                connectionStart, innovations, weights, enabled, speciesIds, neat.getLastSpeciesId(), speciesScores,
+                champions, memberStart, members);
+    }
+
+    /**
+     * Saves a run to a file.
+     * @param neat The run, between two generations.
+     * @param file The file, which is replaced if it exists.
+     * @throws IOException If the file cannot be written.
+     */
+    public static void save(Neat neat, Path file) throws IOException {
+        capture(neat).write(file);
+    }
+
+    /**
+     * Writes this snapshot to a file, replacing it once the snapshot is completely written.
+     * @param file The file.
+     * @throws IOException If the file cannot be written.
+     */
+    public void write(Path file) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            write(channel);
+            channel.force(false);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Writes this snapshot to a channel.
+     * @param channel The channel, which is not closed.
+     * @throws IOException If the channel cannot be written.
+     */
+    public void write(WritableByteChannel channel) throws IOException {
+        Encoder out = new Encoder(channel);
+        out.putInt(MAGIC);
+        out.putVarint(VERSION);
+        out.putVarint(inputSize);
+        out.putVarint(outputSize);
+        out.putVarint(generation);
+        for (double parameter : new double[]{config.mutateLinkRate(), config.mutateNodeRate(),
+                config.mutateWeightShiftRate(), config.mutateWeightRandomRate(), config.mutateToggleRate(),
+                config.weightShiftStrength(), config.weightRandomStrength(), config.survivalPercentage(),
+                config.c1(), config.c2(), config.c3(), config.compatibilityThreshold()}) {
+            out.putDouble(parameter);
+        }
+        out.putVarint(config.targetSpeciesCount());
+        out.putDouble(config.thresholdStep());
+        out.putByte((byte) (config.recurrent() ? 1 : 0));
+        out.putDouble(config.mutateActivationRate());
+        out.putByte((byte) config.approximation().ordinal());
+        out.putDouble(compatibilityThreshold);
+        byte[] name = generator.getBytes(StandardCharsets.UTF_8);
+        out.putVarint(name.length);
+        for (byte b : name) {
+            out.putByte(b);
+        }
+        out.putLong(seed);
+
+        out.putVarint(nodeTypes.length);
+        for (int i = 0; i < nodeTypes.length; i++) {
+            out.putByte(nodeTypes[i]);
+            out.putDouble(nodeX[i]);
+            out.putDouble(nodeY[i]);
+        }
+        out.putVarint(connectionKeys.length);
+        for (long key : connectionKeys) {
+            out.putVarint((int) (key >>> 32));
+            out.putVarint((int) key);
+        }
+        out.putVarint(splits.length / 3);
+        for (int split : splits) {
+            out.putVarint(split);
+        }
+
+        out.putVarint(scores.length);
+        for (int i = 0; i < scores.length; i++) {
+            out.putDouble(scores[i]);
+            out.putAscending(nodeIds, nodeStart[i], nodeStart[i + 1]);
+            putActivations(out, nodeStart[i], nodeStart[i + 1]);
+            out.putAscending(innovations, connectionStart[i], connectionStart[i + 1]);
+            for (int c = connectionStart[i]; c < connectionStart[i + 1]; c++) {
+                out.putDouble(weights[c]);
+            }
+            out.putBits(enabled, connectionStart[i], connectionStart[i + 1]);
+        }
+
+        out.putVarint(lastSpeciesId);
+        out.putVarint(speciesIds.length);
+        for (int s = 0; s < speciesIds.length; s++) {
+            out.putVarint(speciesIds[s]);
+            out.putDouble(speciesScores[s]);
+            out.putVarint(champions[s] + 1);
+            out.putVarint(memberStart[s + 1] - memberStart[s]);
+            for (int m = memberStart[s]; m < memberStart[s + 1]; m++) {
+                out.putVarint(members[m]);
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Restores a run saved to a file, whose parallel work runs on the common pool.
+     * @param file The file.
+     * @return The restored run.
+     * @throws IOException If the file cannot be read or is not a snapshot.
+     */
+    public static Neat restore(Path file) throws IOException {
+        return restore(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Restores a run saved to a file.
+     * @param file The file.
+     * @param pool The pool used by the restored run.
+     * @return The restored run, ready to evaluate its population.
+     * @throws IOException If the file cannot be read or is not a snapshot.
+     */
+    public static Neat restore(Path file, ForkJoinPool pool) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+            return decode(in, pool);
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupted checkpoint " + file, e);
+        }
+    }
+
+    private static Neat decode(ByteBuffer in, ForkJoinPool pool) throws IOException {
+        if (in.getInt() != MAGIC) {
+            throw new IOException("Not a checkpoint");
+        }
+        int version = getVarint(in);
+        if (version != VERSION) {
+            throw new IOException("Unsupported checkpoint version " + version);
+        }
+        int inputSize = getVarint(in);
+        int outputSize = getVarint(in);
+        int generation = getVarint(in);
+        NeatConfig config = new NeatConfig(in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+                in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(),
+                in.getDouble(), in.getDouble(), in.getDouble(), in.getDouble(), getVarint(in), in.getDouble(), in.get() != 0,
+                in.getDouble(), Approximation.values()[in.get()]);
+        double compatibilityThreshold = in.getDouble();
+        byte[] name = new byte[getVarint(in)];
+        in.get(name);
+        RandomGeneratorFactory<SplittableGenerator> generators =
+                RandomGeneratorFactory.of(new String(name, StandardCharsets.UTF_8));
+        Neat neat = new Neat(inputSize, outputSize, config,
+                new Neat.Options().pool(pool).generators(generators).seed(in.getLong()));
+
+        NodeType[] types = NodeType.values();
+        NodeGene[] nodes = new NodeGene[getVarint(in)];
+        for (int i = 0; i < nodes.length; i++) {
+            int type = in.get();
+            nodes[i] = new NodeGene(0);
+            nodes[i].setType(type < 0 ? null : types[type]);
+            nodes[i].setX(in.getDouble());
+            nodes[i].setY(in.getDouble());
+        }
+        long[] connectionKeys = new long[getVarint(in)];
+        for (int i = 0; i < connectionKeys.length; i++) {
+            connectionKeys[i] = InnovationRegistry.key(getVarint(in), getVarint(in));
+        }
+        int[] splits = new int[3 * getVarint(in)];
+        for (int i = 0; i < splits.length; i++) {
+            splits[i] = getVarint(in);
+        }
+        InnovationRegistry registry = neat.getRegistry();
+        registry.restore(nodes, connectionKeys, splits);
+
+        int size = getVarint(in);
+        List<Individual> individuals = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            Individual individual = new Individual();
+            individual.setScore(in.getDouble());
+            Genome genome = new Genome(neat);
+
+            int nodeCount = getVarint(in);
+            for (int n = 0, id = 0; n < nodeCount; n++) {
+                id += getVarint(in);
+                genome.addNode(registry.getNode(id));
+            }
+            for (int count = getVarint(in); count > 0; count--) {
+                int n = getVarint(in);
+                genome.setActivation(genome.getNodeId(n), Activation.of(in.get()));
+            }
+
+            int connectionCount = getVarint(in);
+            int[] innovations = new int[connectionCount];
+            for (int c = 0, innovation = 0; c < connectionCount; c++) {
+                innovation += getVarint(in);
+                innovations[c] = innovation;
+            }
+            double[] weights = new double[connectionCount];
+            for (int c = 0; c < connectionCount; c++) {
+                weights[c] = in.getDouble();
+            }
+            int bits = 0;
+            for (int c = 0; c < connectionCount; c++) {
+                if ((c & 7) == 0) bits = in.get();
+                long key = connectionKeys[innovations[c] - 1];
+                genome.addConnection(innovations[c], (int) (key >>> 32), (int) key, weights[c], (bits & 1 << (c & 7)) != 0);
+            }
+
+            individual.setGenome(genome);
+            individuals.add(individual);
+        }
+
+        int lastSpeciesId = getVarint(in);
+        int speciesCount = getVarint(in);
+        List<Species> species = new ArrayList<>(speciesCount);
+        for (int s = 0; s < speciesCount; s++) {
+            int id = getVarint(in);
+            double score = in.getDouble();
+            int champion = getVarint(in) - 1;
+            int memberCount = getVarint(in);
+            List<Individual> members = new ArrayList<>(memberCount);
+            for (int m = 0; m < memberCount; m++) {
+                members.add(individuals.get(getVarint(in)));
+            }
+            species.add(new Species(id, champion < 0 ? null : individuals.get(champion), members, score));
+        }
+
+        neat.restore(generation, individuals, species, compatibilityThreshold, lastSpeciesId);
+        return neat;
+    }
+
+    /**
+     * Writes the activations of the nodes of a genome that are not the default one, as their number followed by the
+     * index of every node and its activation, so that genomes whose activations never mutate take a single byte.
+     */
+    private void putActivations(Encoder out, int from, int to) throws IOException {
+        int count = 0;
+        for (int j = from; j < to; j++) {
+            if (activations[j] != 0) count++;
+        }
+        out.putVarint(count);
+        for (int j = from; j < to; j++) {
+            if (activations[j] != 0) {
+                out.putVarint(j - from);
+                out.putByte(activations[j]);
+            }
+        }
+    }
+
+    private static int getVarint(ByteBuffer in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0) return value;
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Buffers the encoded snapshot in a direct buffer which is flushed to the channel when it is full.
+     */
+    private static final class Encoder {
+
+        private final WritableByteChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+
+        Encoder(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        void putByte(byte value) throws IOException {
+            ensure(1);
+            buffer.put(value);
+        }
+
+        void putInt(int value) throws IOException {
+            ensure(4);
+            buffer.putInt(value);
+        }
+
+        void putLong(long value) throws IOException {
+            ensure(8);
+            buffer.putLong(value);
+        }
+
+        void putDouble(double value) throws IOException {
+            ensure(8);
+            buffer.putDouble(value);
+        }
+
+        void putVarint(int value) throws IOException {
+            ensure(5);
+            while ((value & ~0x7f) != 0) {
+                buffer.put((byte) (value & 0x7f | 0x80));
+                value >>>= 7;
+            }
+            buffer.put((byte) value);
+        }
+
+        /**
+         * Writes the count and the differences between consecutive values of an ascending range.
+         */
+        void putAscending(int[] values, int from, int to) throws IOException {
+            putVarint(to - from);
+            int previous = 0;
+            for (int i = from; i < to; i++) {
+                putVarint(values[i] - previous);
+                previous = values[i];
+            }
+        }
+
+        void putBits(boolean[] values, int from, int to) throws IOException {
+            for (int i = from; i < to; i += 8) {
+                int bits = 0;
+                for (int b = 0; b < 8 && i + b < to; b++) {
+                    if (values[i + b]) bits |= 1 << b;
+                }
+                putByte((byte) bits);
+            }
+        }
+
+        private void ensure(int bytes) throws IOException {
+            if (buffer.remaining() < bytes) flush();
+        }
+
+        void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package model;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Saves a run to a file every given number of generations, see {@link Neat#setCheckpointer}.
+ * <p>
+ * The run is captured by the thread evolving it, which only copies the genes, and the snapshot is encoded and written
+ * by a background thread while the next generations evolve. If the previous snapshot is still being written when the
+ * next one is due, the next one is skipped rather than stalling the run. A failed write is rethrown by the following
+ * generation or by {@link #close()}.
+ */
+public class Checkpointer implements AutoCloseable {
+
+    private final Path file;
+    private final int interval;
+    private final ExecutorService writer = Executors.newSingleThreadExecutor(task -> {
+        Thread thread = new Thread(task, "neat-checkpoint");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private Future<?> pending;
+    private int written;
+    private int skipped;
+
+    /**
+     * @param file The file the run is saved to, replaced by every snapshot.
+     * @param interval The number of generations between two snapshots.
+     */
+    public Checkpointer(Path file, int interval) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("The interval must be positive");
+        }
+        this.file = file;
+        this.interval = interval;
+    }
+
+    /**
+     * Called by the run after every generation.
+     * @param neat The run.
+     */
+    void generationEnded(Neat neat) {
+        if (neat.getGeneration() % interval != 0) return;
+
+        if (pending != null) {
+            if (!pending.isDone()) {
+                skipped++;
+                return;
+            }
+            complete();
+        }
+        Checkpoint checkpoint = Checkpoint.capture(neat);
+        pending = writer.submit(() -> {
+            checkpoint.write(file);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the snapshot being written, if any.
+     * @throws UncheckedIOException If the snapshot could not be written.
+     */
+    public void await() {
+        if (pending != null) complete();
+    }
+
+    private void complete() {
+        try {
+            pending.get();
+            written++;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof IOException io
+                    ? new UncheckedIOException(io)
+                    : new IllegalStateException(e.getCause());
+        } finally {
+            pending = null;
+        }
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    /**
+     * @return The number of snapshots written so far, not counting the one being written.
+     */
+    public int getWritten() {
+        return written;
+    }
+
+    /**
+     * @return The number of snapshots skipped because the previous one was still being written.
+     */
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * Waits for the snapshot being written and stops the background thread.
+     */
+    @Override
+    public void close() {
+        try {
+            await();
+        } finally {
+            writer.shutdown();
+        }
+    }
+}
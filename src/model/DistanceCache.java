@@ -0,0 +1,92 @@
+package model;
+
+import model.genes.Genome;
+
+import java.util.Arrays;
+
+/**
+ * Remembers the distances computed between individuals and species champions during a generation.
+ * Pairs are identified by the revisions of the two genomes, so a distance is reused in the next generation
+ * only if neither genome changed in between. Distances that are not used during a generation are forgotten.
+ */
+class DistanceCache {
+
+    private LongIntHashMap index = new LongIntHashMap();
+    private double[] distances = new double[0];
+    private long computations;
+
+    /**
+     * Returns the distance between an individual and a champion, from the previous generation if possible.
+     * May be called by several threads at the same time, as long as each one records into its own entries.
+     * @param individual The individual being classified.
+     * @param champion The champion of a species.
+     * @param used The entries receiving the distance, to be kept for the next generation.
+     * @return The distance between the two genomes.
+     */
+    double distance(Individual individual, Individual champion, Entries used) {
+        Genome genome = individual.getGenome();
+        Genome other = champion.getGenome();
+        long key = InnovationRegistry.key(genome.getRevision(), other.getRevision());
+
+        int i = index.get(key, -1);
+        double distance;
+        if (i < 0) {
+            distance = genome.distance(other);
+            used.computed++;
+        } else {
+            distance = distances[i];
+        }
+        used.add(key, distance);
+        return distance;
+    }
+
+    /**
+     * Replaces the cached distances by the ones used during the generation that just ended.
+     * @param used The entries recorded during the generation.
+     */
+    void retain(Entries[] used) {
+        int total = 0;
+        computations = 0;
+        for (Entries entries : used) {
+            total += entries.size;
+            computations += entries.computed;
+        }
+
+        index = new LongIntHashMap(total);
+        distances = new double[total];
+        int size = 0;
+        for (Entries entries : used) {
+            for (int i = 0; i < entries.size; i++) {
+                index.put(entries.keys[i], size);
+                distances[size++] = entries.distances[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of distances that were computed rather than found in the cache during the last generation.
+     * @return The number of distance computations.
+     */
+    long getComputations() {
+        return computations;
+    }
+
+    /**
+     * The distances used by a single thread of work.
+     */
+    static final class Entries {
+        private long[] keys = new long[4];
+        private double[] distances = new double[4];
+        private int size;
+        private int computed;
+
+        private void add(long key, double distance) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                distances = Arrays.copyOf(distances, size * 2);
+            }
+            keys[size] = key;
+            distances[size++] = distance;
+        }
+    }
+}
@@ -2,6 +2,8 @@ package model;
 
 import model.genes.Genome;
 
+import java.util.random.RandomGenerator;
+
 /**
  * @author Andrea Dal Molin
  * Represents an individual in the NEAT algorithm.
@@ -23,6 +25,32 @@ public class Individual {
         return this.genome.calculateOutput(inputs);
     }
 
+    /**
+     * Calculates the output of the neural network into a given buffer, without allocating.
+     * @param inputs The inputs to the neural network.
+     * @param outputs The buffer receiving the output from the neural network.
+     */
+    public void calculateOutput(double[] inputs, double[] outputs) {
+        this.genome.calculateOutput(inputs, outputs);
+    }
+
+    /**
+     * Clears the activations a recurrent network carries from one call to the next, typically before an episode.
+     */
+    public void reset() {
+        this.genome.getNetwork().reset();
+    }
+
+    /**
+     * Calculates the output of the neural network for many samples at once.
+     * @param inputs The inputs to the neural network in row-major order, one row per sample.
+     * @param outputs The buffer receiving the output from the neural network in row-major order.
+     * @param rows The number of samples.
+     */
+    public void calculateOutputs(double[] inputs, double[] outputs, int rows) {
+        this.genome.calculateOutputs(inputs, outputs, rows);
+    }
+
     /**
      * Computes the genetic distance between this individual and another. This is necessary for species categorization.
      * @param other The other individual to compare with.
@@ -34,9 +62,10 @@ public class Individual {
 
     /**
      * Performs mutation on the individual's genome, potentially altering its structure and parameters.
+     * @param random The generator deciding the mutations.
      */
-    public void mutate() {
-        genome.mutate();
+    public void mutate(RandomGenerator random) {
+        genome.mutate(random);
     }
 
     public Genome getGenome() {
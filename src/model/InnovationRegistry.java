@@ -0,0 +1,328 @@
+package model;
+
+import model.genes.ConnectionGene;
+import model.genes.NodeGene;
+import model.genes.NodeType;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+/**
+ * Keeps the history of innovations of a NEAT run.
+ * Every node ever created is stored by id, and every connection is identified by the ids of its two nodes,
+ * packed into a single long so that looking up the innovation number of a connection does not allocate.
+ * <p>
+ * The registry is thread-safe, so that genomes can be mutated in parallel. Connections and split nodes are
+ * spread over independently locked stripes and ids are assigned atomically, so two genomes adding the same
+ * structure at the same time receive the same innovation number.
+ */
+public class InnovationRegistry {
+
+    private static final int STRIPES = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final AtomicInteger connectionCount = new AtomicInteger();
+
+    private final Object nodeLock = new Object();
+    private volatile NodeGene[] nodes = new NodeGene[64];
+    private long[] origins = new long[64];
+    private int[] ordinals = new int[64];
+    private volatile int nodeCount;
+
+    public InnovationRegistry() {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+    }
+
+    /**
+     * Packs the ids of the two nodes of a connection into a single key.
+     * @param from The id of the source node.
+     * @param to The id of the destination node.
+     * @return The key of the connection.
+     */
+    public static long key(int from, int to) {
+        return ((long) from << 32) | (to & 0xffffffffL);
+    }
+
+    /**
+     * Returns the innovation number of the connection between two nodes, registering it if it is new.
+     * @param from The source node.
+     * @param to The destination node.
+     * @return The innovation number of the connection.
+     */
+    public int getInnovation(NodeGene from, NodeGene to) {
+        long key = key(from.getInnovationNumber(), to.getInnovationNumber());
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            int innovation = stripe.connections.get(key, 0);
+            if (innovation == 0) {
+                innovation = connectionCount.incrementAndGet();
+                stripe.connections.put(key, innovation);
+            }
+            return innovation;
+        }
+    }
+
+    /**
+     * Returns the innovation number of the connection between two nodes without registering it.
+     * @param from The source node.
+     * @param to The destination node.
+     * @return The innovation number of the connection, or 0 if it has never been created.
+     */
+    public int findInnovation(NodeGene from, NodeGene to) {
+        long key = key(from.getInnovationNumber(), to.getInnovationNumber());
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            return stripe.connections.get(key, 0);
+        }
+    }
+
+    /**
+     * Creates a new connection gene between two nodes carrying the innovation number of that connection.
+     * @param from The source node.
+     * @param to The destination node.
+     * @return The new connection gene.
+     */
+    public ConnectionGene newConnection(NodeGene from, NodeGene to) {
+        ConnectionGene connectionGene = new ConnectionGene(from, to);
+        connectionGene.setInnovationNumber(getInnovation(from, to));
+        return connectionGene;
+    }
+
+    /**
+     * Returns the hidden node that splits a connection, creating it the first time the connection is split.
+     * @param innovation The innovation number of the connection being split.
+     * @param from The source node of the connection.
+     * @param to The destination node of the connection.
+     * @param y The vertical position given to the node if it is created.
+     * @return The node splitting the connection.
+     * @see #getSplitNode(int, int, NodeGene, NodeGene, double)
+     */
+    public NodeGene getSplitNode(int innovation, NodeGene from, NodeGene to, double y) {
+        return getSplitNode(innovation, 0, from, to, y);
+    }
+
+    /**
+     * Returns a hidden node that splits a connection, creating it the first time it is asked for.
+     * A genome splitting a connection it already split before, after adding the connection back, asks for the
+     * next ordinal, so that every hidden node is named by the connection and the ordinal of its split.
+     * The node is placed halfway between the two nodes of the connection, and is fully initialized before
+     * any other thread can see it.
+     * @param innovation The innovation number of the connection being split.
+     * @param ordinal The number of times the genome already split the connection.
+     * @param from The source node of the connection.
+     * @param to The destination node of the connection.
+     * @param y The vertical position given to the node if it is created.
+     * @return The node splitting the connection.
+     */
+    public NodeGene getSplitNode(int innovation, int ordinal, NodeGene from, NodeGene to, double y) {
+        long key = splitKey(innovation, ordinal);
+        Stripe stripe = stripe(key);
+        synchronized (stripe) {
+            int id = stripe.splits.get(key, 0);
+            if (id != 0) return getNode(id);
+
+            NodeGene node = hiddenNode((from.getX() + to.getX()) / 2, y);
+            addNode(node, key(from.getInnovationNumber(), to.getInnovationNumber()), ordinal);
+            stripe.splits.put(key, node.getInnovationNumber());
+            return node;
+        }
+    }
+
+    private static long splitKey(int innovation, int ordinal) {
+        return ((long) ordinal << 32) | (innovation & 0xffffffffL);
+    }
+
+    /**
+     * Creates a hidden node between two nodes, which is not registered as the split of any connection.
+     * @param from The node on the left of the new node.
+     * @param to The node on the right of the new node.
+     * @param y The vertical position of the new node.
+     * @return The new node.
+     */
+    public NodeGene newNode(NodeGene from, NodeGene to, double y) {
+        return newNode((from.getX() + to.getX()) / 2, y);
+    }
+
+    /**
+     * Creates a hidden node at the given position, which is not registered as the split of any connection.
+     * @param x The horizontal position of the new node.
+     * @param y The vertical position of the new node.
+     * @return The new node.
+     */
+    public NodeGene newNode(double x, double y) {
+        return addNode(hiddenNode(x, y), 0, 0);
+    }
+
+    private static NodeGene hiddenNode(double x, double y) {
+        NodeGene node = new NodeGene(0);
+        node.setType(NodeType.HIDDEN);
+        node.setX(x);
+        node.setY(y);
+        return node;
+    }
+
+    /**
+     * Creates a totally new node
+     *
+     * @return a new model.genes.NodeGene
+     */
+    public NodeGene newNode() {
+        return addNode(new NodeGene(0), 0, 0);
+    }
+
+    private NodeGene addNode(NodeGene node, long origin, int ordinal) {
+        synchronized (nodeLock) {
+            int id = nodeCount + 1;
+            if (id > nodes.length) {
+                nodes = Arrays.copyOf(nodes, nodes.length * 2);
+                origins = Arrays.copyOf(origins, nodes.length);
+                ordinals = Arrays.copyOf(ordinals, nodes.length);
+            }
+            node.setInnovationNumber(id);
+            nodes[id - 1] = node;
+            origins[id - 1] = origin;
+            ordinals[id - 1] = ordinal;
+            nodeCount = id;
+            return node;
+        }
+    }
+
+    /**
+     * Returns the connection a node was created to split. A node created by {@link #getSplitNode} is the same in
+     * every run that splits the same connection as many times, so the nodes at both ends of this connection and
+     * the ordinal of the split name the node independently of its id.
+     * @param id The id of the node.
+     * @return The key of the split connection, or 0 if the node is not the split of a connection.
+     * @see #key(int, int)
+     * @see #getSplitOrdinal(int)
+     */
+    public long getSplitKey(int id) {
+        synchronized (nodeLock) {
+            return id <= nodeCount ? origins[id - 1] : 0;
+        }
+    }
+
+    /**
+     * @param id The id of a node splitting a connection.
+     * @return The ordinal of the split.
+     */
+    public int getSplitOrdinal(int id) {
+        synchronized (nodeLock) {
+            return id <= nodeCount ? ordinals[id - 1] : 0;
+        }
+    }
+
+    /**
+     * Returns a node by id. The node count is read first, so that a node published by another thread is
+     * seen fully initialized.
+     * @param id The id of the node.
+     * @return The node with this id.
+     */
+    public NodeGene getNode(int id) {
+        if (id > nodeCount) {
+            throw new IndexOutOfBoundsException("Unknown node " + id);
+        }
+        return nodes[id - 1];
+    }
+
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    public int getConnectionCount() {
+        return connectionCount.get();
+    }
+
+    /**
+     * Returns the key of every registered connection.
+     * @return The keys of the connections, the key of innovation number i being at index i - 1.
+     * @see #key(int, int)
+     */
+    public long[] getConnectionKeys() {
+        long[] keys = new long[connectionCount.get()];
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.connections.forEach((key, innovation) -> {
+                    if (innovation <= keys.length) keys[innovation - 1] = key;
+                });
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns every connection split so far with the nodes that split it.
+     * @return Triples of the innovation number of a connection, the ordinal of the split and the id of the split node.
+     */
+    public int[] getSplits() {
+        IntStream.Builder splits = IntStream.builder();
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.splits.forEach((key, node) -> splits.add((int) key).add((int) (key >>> 32)).add(node));
+            }
+        }
+        return splits.build().toArray();
+    }
+
+    /**
+     * Replaces the history of this registry with a saved one.
+     * @param nodes The nodes, by id minus one, whose innovation numbers are set by this method.
+     * @param connectionKeys The keys of the connections, by innovation number minus one.
+     * @param splits Triples of the innovation number of a connection, the ordinal of the split and the id of the split
+     *               node.
+     * @see #getConnectionKeys()
+     * @see #getSplits()
+     */
+    public void restore(NodeGene[] nodes, long[] connectionKeys, int[] splits) {
+        clear();
+        for (NodeGene node : nodes) {
+            addNode(node, 0, 0);
+        }
+        for (int i = 0; i < connectionKeys.length; i++) {
+            Stripe stripe = stripe(connectionKeys[i]);
+            synchronized (stripe) {
+                stripe.connections.put(connectionKeys[i], i + 1);
+            }
+        }
+        connectionCount.set(connectionKeys.length);
+        for (int i = 0; i < splits.length; i += 3) {
+            long key = splitKey(splits[i], splits[i + 1]);
+            Stripe stripe = stripe(key);
+            synchronized (stripe) {
+                stripe.splits.put(key, splits[i + 2]);
+            }
+            synchronized (nodeLock) {
+                origins[splits[i + 2] - 1] = connectionKeys[splits[i] - 1];
+                ordinals[splits[i + 2] - 1] = splits[i + 1];
+            }
+        }
+    }
+
+    public void clear() {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                stripe.connections.clear();
+                stripe.splits.clear();
+            }
+        }
+        connectionCount.set(0);
+        synchronized (nodeLock) {
+            nodes = new NodeGene[64];
+            origins = new long[64];
+            ordinals = new int[64];
+            nodeCount = 0;
+        }
+    }
+
+    private Stripe stripe(long key) {
+        return stripes[(int) (LongIntHashMap.mix(key) >>> 58)];
+    }
+
+    private static final class Stripe {
+        private final LongIntHashMap connections = new LongIntHashMap(256);
+        private final LongIntHashMap splits = new LongIntHashMap(16);
+    }
+}
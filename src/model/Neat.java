@@ -4,62 +4,131 @@ import model.genes.ConnectionGene;
 import model.genes.Genome;
 import model.genes.NodeGene;
 import model.genes.NodeType;
+import model.metrics.EvolutionListener;
+import model.metrics.GenerationStats;
+import model.metrics.Phase;
+import model.metrics.SpeciesStats;
 import ui.Frame;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.function.ToDoubleFunction;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGeneratorFactory;
+import java.util.random.RandomGenerator.SplittableGenerator;
+import java.util.stream.IntStream;
 
 public class Neat {
 
-    public static final double MUTATE_LINK_RATE = 0.3;
-    public static final double MUTATE_NODE_RATE = 0.03;
-    public static final double MUTATE_WEIGHT_SHIFT_RATE = 0.02;
-    public static final double MUTATE_WEIGHT_RANDOM_RATE = 0.02;
-    public static final double MUTATE_TOGGLE_RATE = 0.2;
-    public static final double WEIGHT_SHIFT_STRENGTH = 0.3;
-    public static final double WEIGHT_RANDOM_STRENGTH = 1;
-    public static final double SURVIVAL_PERCENTAGE = 80;
-    public static final double C1 = 1;
-    public static final double C2 = 1;
-    public static final double C3 = 0.4;
-    public static final double CP = 4;
-
-    private final HashMap<ConnectionGene, ConnectionGene> allConnections = new HashMap<>();
-    private final List<NodeGene> allNodes = new ArrayList<>();
+    private final NeatConfig config;
+    private double compatibilityThreshold;
+    private final InnovationRegistry registry;
     private int inputSize;
     private int outputSize;
     private final ArrayList<Individual> individuals = new ArrayList<>();
     private final ArrayList<Species> species = new ArrayList<>();
+    private final ForkJoinPool pool;
+    private final RandomGeneratorFactory<SplittableGenerator> generators;
+    private long seed;
+    private SplittableGenerator random;
+    private final DistanceCache distanceCache = new DistanceCache();
+    private final List<EvolutionListener> listeners = new CopyOnWriteArrayList<>();
+    private int generation;
+    private int lastSpeciesId;
+    private long evaluationNanos;
+    private Checkpointer checkpointer;
 
     public Neat(int inputSize, int outputSize, int individuals) {
-         this.initialize(inputSize, outputSize, individuals);
+        this(inputSize, outputSize, individuals, NeatConfig.DEFAULT, new Options());
     }
 
+    /**
+     * Creates a population with the given hyperparameters.
+     * Every generation creates its generator from the seed left by the previous one, and every random decision of
+     * the evolution comes from this generator or from streams split from it in population order. A run is therefore
+     * reproducible whatever the parallelism of the pool, and its random state between two generations is a single
+     * seed, which is what a {@link Checkpoint} saves.
+     * @param inputSize The number of input nodes.
+     * @param outputSize The number of output nodes.
+     * @param individuals The size of the population.
+     * @param config The hyperparameters of the run.
+     * @param options The pool, the seed, the generators and the registry of the run.
+     */
+    public Neat(int inputSize, int outputSize, int individuals, NeatConfig config, Options options) {
+        this(inputSize, outputSize, config, options);
+        this.initialize(inputSize, outputSize, individuals);
+    }
+
+    /**
+     * Creates an empty run, filled by {@link #restore}.
+     */
+    Neat(int inputSize, int outputSize, NeatConfig config, Options options) {
+        if (!options.generators.isSplittable()) {
+            throw new IllegalArgumentException(options.generators.name() + " is not splittable");
+        }
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.pool = options.pool;
+        this.config = config;
+        this.compatibilityThreshold = config.compatibilityThreshold();
+        this.registry = options.registry != null ? options.registry : new InnovationRegistry();
+        this.generators = options.generators;
+        this.seed = options.seed;
+        this.random = generators.create(seed);
+    }
+
+    /**
+     * Creates a genome without connections, holding the inputs, the outputs and the bias node of the population.
+     * @return The genome.
+     */
     public Genome emptyGenome () {
         Genome g = new Genome(this);
-        for(int i = 0; i < inputSize + outputSize; i++){
-            g.getNodes().put(i+1, getNode(i+1));
+        for(int i = 0; i < inputSize + outputSize + 1; i++){
+            g.addNode(getNode(i+1));
         }
         return g;
     }
 
+    /**
+     * Registers the inputs, the outputs and the bias node, whose value is always 1, unless the registry already
+     * starts with them, and fills the population with empty genomes.
+     */
     private void initialize(int inputSize, int outputSize, int individuals) {
         this.inputSize = inputSize;
         this.outputSize = outputSize;
-
-        allConnections.clear();
-        allNodes.clear();
         this.individuals.clear();
 
-        for(int i = 0;i < inputSize; i++){
-            NodeGene n = getNode();
-            n.setType(NodeType.INPUT);
-            n.setY((i + 1) / (double)(inputSize + 1));
-        }
+        synchronized (registry) {
+            if (registry.getNodeCount() == 0) {
+                for (int i = 0; i < inputSize; i++) {
+                    NodeGene n = getNode();
+                    n.setType(NodeType.INPUT);
+                    n.setY((i + 1) / (double) (inputSize + 2));
+                }
+
+                for (int i = 0; i < outputSize; i++) {
+                    NodeGene n = getNode();
+                    n.setType(NodeType.OUTPUT);
+                    n.setY((i + 1) / (double) (outputSize + 1));
+                }
 
-        for(int i = 0; i < outputSize; i++){
-            NodeGene n = getNode();
-            n.setType(NodeType.OUTPUT);
-            n.setY((i + 1) / (double)(outputSize + 1));
+                NodeGene bias = getNode();
+                bias.setType(NodeType.BIAS);
+                bias.setY((inputSize + 1) / (double) (inputSize + 2));
+            } else {
+                for (int i = 1; i <= inputSize + outputSize + 1; i++) {
+                    NodeType type = i <= inputSize ? NodeType.INPUT
+                            : i <= inputSize + outputSize ? NodeType.OUTPUT : NodeType.BIAS;
+                    if (i > registry.getNodeCount() || registry.getNode(i).getType() != type) {
+                        throw new IllegalArgumentException("The registry does not start with "
+                                + inputSize + " inputs, " + outputSize + " outputs and a bias node");
+                    }
+                }
+            }
         }
 
         for (int i = 0; i < individuals; i++) {
@@ -69,33 +138,279 @@ public class Neat {
         }
     }
 
+    /**
+     * Scores every individual of the population in parallel and stores the result with {@link Individual#setScore}.
+     * Each genome evaluates its own compiled network, so the fitness function may run on several individuals
+     * at the same time, but it must not share mutable state between calls. The scores are the same as in a serial run.
+     * <p>
+     * The network of every individual is reset before its fitness call, so the activations of a recurrent network
+     * only last within one call. A score therefore only depends on the genome, and a run gives the same scores
+     * whether it is evaluated here, on remote workers, or after being restored from a {@link Checkpoint}.
+     * @param fitness The fitness function, called once per individual.
+     */
+    public void evaluatePopulation(ToDoubleFunction<Individual> fitness) {
+        long start = listeners.isEmpty() ? 0 : System.nanoTime();
+        pool.invoke(ForkJoinTask.adapt(() -> individuals.parallelStream().forEach(individual -> {
+            individual.getGenome().getNetwork().reset();
+            individual.setScore(fitness.applyAsDouble(individual));
+        })));
+        if (!listeners.isEmpty()) {
+            evaluationNanos = System.nanoTime() - start;
+            publishPhase(Phase.EVALUATION, evaluationNanos);
+        }
+    }
+
+    /**
+     * Evolves the population into the next generation.
+     * When listeners are attached, every phase is timed and the statistics of the generation and of its species
+     * are published to them. Without listeners, nothing is measured.
+     */
     public void evolvePopulation() {
-        generateSpecies();
+        evolvePopulation(null);
+    }
+
+    /**
+     * Evolves the population into the next generation while its evaluation finishes elsewhere.
+     * Assigning the individuals to species does not depend on their scores, so it runs before waiting for the
+     * evaluation. The evaluation must not change the genomes, and the generation is the same as if the population
+     * had been evaluated before calling {@link #evolvePopulation()}. When listeners are attached, the time spent
+     * waiting for the evaluation is published as its duration.
+     * @param evaluation The evaluation setting the score of every individual, or null if the scores are already set.
+     * @throws IllegalStateException If the evaluation fails or the thread is interrupted while waiting for it.
+     */
+    public void evolvePopulation(Future<?> evaluation) {
+        random = generators.create(seed);
+        seed = random.nextLong();
+
+        long[] phaseNanos = listeners.isEmpty() ? null : new long[Phase.values().length];
+        long start = phaseNanos == null ? 0 : System.nanoTime();
+
+        double threshold = compatibilityThreshold;
+        double reach = generateSpecies();
+        start = lap(phaseNanos, Phase.SPECIATION, start);
+        if (evaluation != null) {
+            await(evaluation);
+            if (phaseNanos != null) {
+                evaluationNanos = System.nanoTime() - start;
+                publishPhase(Phase.EVALUATION, evaluationNanos);
+            }
+        }
+        for (Species species : species) {
+            species.evaluateScore();
+        }
+        double bestScore = phaseNanos == null ? 0 : publishSpecies();
+        int speciesCount = species.size();
+
+        start = phaseNanos == null ? 0 : System.nanoTime();
         eliminateWeakIndividuals();
+        start = lap(phaseNanos, Phase.ELIMINATION, start);
         removeEmptySpecies();
+        adjustCompatibilityThreshold(species.size(), reach);
+        start = lap(phaseNanos, Phase.EXTINCTION, start);
         reproducePopulation();
+        start = lap(phaseNanos, Phase.REPRODUCTION, start);
         mutatePopulation();
+        lap(phaseNanos, Phase.MUTATION, start);
+
+        if (phaseNanos != null) {
+            phaseNanos[Phase.EVALUATION.ordinal()] = evaluationNanos;
+            publishGeneration(phaseNanos, speciesCount, threshold, bestScore);
+        }
+        evaluationNanos = 0;
+        generation++;
+
+        if (checkpointer != null) {
+            checkpointer.generationEnded(this);
+        }
     }
 
-    private void mutatePopulation() {
+    /**
+     * Ends a phase, publishing its duration if listeners are attached.
+     * @param phaseNanos The durations of the generation, or null if it is not measured.
+     * @param phase The phase that ended.
+     * @param start The time the phase started at.
+     * @return The time the phase ended at, which is the start of the next one, or 0 without listeners.
+     */
+    private long lap(long[] phaseNanos, Phase phase, long start) {
+        if (phaseNanos == null) return 0;
+
+        long now = System.nanoTime();
+        phaseNanos[phase.ordinal()] = now - start;
+        publishPhase(phase, now - start);
+        return now;
+    }
+
+    private void publishPhase(Phase phase, long nanos) {
+        for (EvolutionListener listener : listeners) {
+            listener.onPhase(generation, phase, nanos);
+        }
+    }
+
+    /**
+     * Publishes the statistics of every species.
+     * @return The best score of the population.
+     */
+    private double publishSpecies() {
+        double bestScore = Double.NEGATIVE_INFINITY;
+        for (Species s : species) {
+            double speciesBest = Double.NEGATIVE_INFINITY;
+            for (Individual individual : s.getIndividuals()) {
+                speciesBest = Math.max(speciesBest, individual.getScore());
+            }
+            bestScore = Math.max(bestScore, speciesBest);
+
+            SpeciesStats stats = new SpeciesStats(generation, s.getId(), s.size(), s.getScore(), speciesBest,
+                    s.getChampion().getGenome().getConnectionCount());
+            for (EvolutionListener listener : listeners) {
+                listener.onSpecies(stats);
+            }
+        }
+        return bestScore;
+    }
+
+    private void publishGeneration(long[] phaseNanos, int speciesCount, double threshold, double bestScore) {
+        long totalSize = 0;
+        int maxSize = 0;
         for (Individual individual : individuals) {
-            individual.mutate();
+            int size = individual.getGenome().getConnectionCount();
+            totalSize += size;
+            maxSize = Math.max(maxSize, size);
+        }
+
+        GenerationStats stats = new GenerationStats(generation, speciesCount, threshold,
+                individuals.isEmpty() ? 0 : totalSize / (double) individuals.size(), maxSize, bestScore,
+                registry.getConnectionCount(), registry.getNodeCount(), distanceCache.getComputations(), phaseNanos);
+        for (EvolutionListener listener : listeners) {
+            listener.onGeneration(stats);
+        }
+    }
+
+    public void addListener(EvolutionListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(EvolutionListener listener) {
+        listeners.remove(listener);
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * Saves this run periodically from now on.
+     * @param checkpointer The checkpointer called after every generation, or null to stop saving the run.
+     */
+    public void setCheckpointer(Checkpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Returns the seed of the generator of the next generation.
+     */
+    long getSeed() {
+        return seed;
+    }
+
+    /**
+     * Returns the id of the last species created by this run. Species ids are counted per run, so they do not depend
+     * on the other runs of the process.
+     */
+    int getLastSpeciesId() {
+        return lastSpeciesId;
+    }
+
+    RandomGeneratorFactory<SplittableGenerator> getGenerators() {
+        return generators;
+    }
+
+    /**
+     * @return The number of input nodes, which are the first nodes of the registry, followed by the outputs and the
+     * bias node.
+     */
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    /**
+     * Replaces the population and the species of this run with restored ones.
+     * @param generation The number of generations already evolved.
+     * @param individuals The population.
+     * @param species The species, whose members are part of the population.
+     * @param compatibilityThreshold The compatibility threshold of the next speciation.
+     * @param lastSpeciesId The id of the last species created by the run.
+     */
+    void restore(int generation, List<Individual> individuals, List<Species> species, double compatibilityThreshold,
+                 int lastSpeciesId) {
+        this.generation = generation;
+        this.lastSpeciesId = lastSpeciesId;
+        this.compatibilityThreshold = compatibilityThreshold;
+        this.individuals.clear();
+        this.individuals.addAll(individuals);
+        this.species.clear();
+        this.species.addAll(species);
+    }
+
+    /**
+     * Mutates every individual with its own random stream.
+     * Structural mutations register new innovations, so they are drawn in population order to keep the innovation
+     * numbers reproducible. Applying them to the genes and the weight mutations only touch their own genome, so they
+     * run in parallel.
+     */
+    private void mutatePopulation() {
+        RandomGenerator[] streams = split(individuals.size());
+        for (int i = 0; i < streams.length; i++) {
+            individuals.get(i).getGenome().drawStructure(streams[i]);
+        }
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, streams.length).parallel().forEach(i -> {
+            Genome genome = individuals.get(i).getGenome();
+            genome.applyStructure();
+            genome.mutateWeights(streams[i]);
+        })));
+    }
+
+    private RandomGenerator[] split(int count) {
+        RandomGenerator[] streams = new RandomGenerator[count];
+        for (int i = 0; i < count; i++) {
+            streams[i] = random.split();
         }
+        return streams;
     }
 
+    /**
+     * Gives a new genome to every individual left without a species.
+     * The species of each child is drawn serially, the crossovers run in parallel from the surviving members,
+     * and the children are added to their species once all of them are bred.
+     */
     private void reproducePopulation() {
         RandomSelector<Species> selector = new RandomSelector<>();
         for(Species s:species){
             selector.add(s, s.getScore());
         }
+        selector.freeze();
 
+        List<Individual> children = new ArrayList<>();
+        List<Species> parents = new ArrayList<>();
         for(Individual c: individuals){
             if(c.getSpecies() == null){
-                Species s = selector.random();
-                c.setGenome(s.breed());
-                s.addIndividual(c);
+                children.add(c);
+                parents.add(selector.random(random));
             }
         }
+
+        Genome[] genomes = new Genome[children.size()];
+        RandomGenerator[] streams = split(genomes.length);
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, genomes.length).parallel()
+                .forEach(i -> genomes[i] = parents.get(i).breed(streams[i]))));
+
+        for (int i = 0; i < genomes.length; i++) {
+            children.get(i).setGenome(genomes[i]);
+            parents.get(i).addIndividual(children.get(i));
+        }
     }
 
     private void removeEmptySpecies() {
@@ -109,35 +424,106 @@ public class Neat {
 
     private void eliminateWeakIndividuals() {
         for (Species species : species) {
-            species.kill(100 - SURVIVAL_PERCENTAGE);
+            species.kill(100 - config.survivalPercentage());
         }
     }
 
-    private void generateSpecies() {
+    /**
+     * Assigns every individual without a species to the first compatible species.
+     * The distances to the champions of the existing species are computed in parallel, reusing the distances
+     * of the previous generation for pairs of genomes that did not change. The individuals compatible with none
+     * of them then found or join new species in population order, which gives the same result as a serial pass.
+     * @return The largest distance between an individual and a champion it was compared to.
+     */
+    private double generateSpecies() {
         for(Species species : species) {
-            species.reset();
+            species.reset(random);
         }
 
+        List<Individual> unassigned = new ArrayList<>();
         for (Individual individual : individuals) {
-            if (individual.getSpecies() != null) continue;
-
-            boolean found = false;
+            if (individual.getSpecies() == null) unassigned.add(individual);
+        }
 
-            for(Species species : species) {
-                if (species.addIndividualIfCompatible(individual)) {
-                    found = true;
-                    break;
-                }
+        int existing = species.size();
+        int[] matches = new int[unassigned.size()];
+        double[] distances = new double[unassigned.size()];
+        DistanceCache.Entries[] used = new DistanceCache.Entries[unassigned.size() + 1];
+        pool.invoke(ForkJoinTask.adapt(() -> IntStream.range(0, matches.length).parallel().forEach(i -> {
+            used[i] = new DistanceCache.Entries();
+            matches[i] = findSpecies(unassigned.get(i), 0, existing, used[i], distances, i);
+        })));
+
+        used[matches.length] = new DistanceCache.Entries();
+        for (int i = 0; i < matches.length; i++) {
+            Individual individual = unassigned.get(i);
+            int match = matches[i] >= 0 ? matches[i]
+                    : findSpecies(individual, existing, species.size(), used[matches.length], distances, i);
+
+            if (match >= 0) {
+                species.get(match).addIndividual(individual);
+            } else {
+                species.add(new Species(++lastSpeciesId, individual));
             }
+        }
+        distanceCache.retain(used);
 
-            if (!found) {
-                species.add(new Species(individual));
-            }
+        double reach = 0;
+        for (double distance : distances) {
+            reach = Math.max(reach, distance);
         }
+        return reach;
+    }
 
-        for (Species species : species) {
-            species.evaluateScore();
+    /**
+     * Moves the compatibility threshold toward the number of species of the configuration, if any. The adjustment is
+     * proportional to the relative difference between the number of species and the target, up to one step, so that
+     * the threshold settles near the target instead of swinging around it. Only the species surviving extinction are
+     * counted: the outliers founding species of their own go extinct at once, and counting them would raise the
+     * threshold until a single species is left.
+     * <p>
+     * The threshold stays within one step of the largest distance measured during the speciation. Beyond it, every
+     * individual already joins the first species it is compared to and raising the threshold changes nothing, but
+     * the threshold would keep growing while the species merge with a delay, then take as many generations to come
+     * back once they have. The threshold never drops below one step.
+     * @param speciesCount The number of species left after extinction.
+     * @param reach The largest distance between an individual and a champion it was compared to.
+     */
+    private void adjustCompatibilityThreshold(int speciesCount, double reach) {
+        int target = config.targetSpeciesCount();
+        if (target == 0) return;
+
+        double step = config.thresholdStep();
+        double error = Math.max(-1, Math.min(1, (speciesCount - target) / (double) target));
+        compatibilityThreshold = Math.max(step, Math.min(reach + step, compatibilityThreshold + error * step));
+    }
+
+    private static void await(Future<?> evaluation) {
+        try {
+            evaluation.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the evaluation", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("The evaluation of the population failed", e.getCause());
+        }
+    }
+
+    /**
+     * @param distances The largest distances between the individuals and the champions they were compared to, raised
+     *                  at the given index by the distances computed here.
+     * @return The index of the first compatible species between two indices, or -1 if there is none.
+     */
+    private int findSpecies(Individual individual, int from, int to, DistanceCache.Entries used,
+                            double[] distances, int index) {
+        for (int i = from; i < to; i++) {
+            double distance = distanceCache.distance(individual, species.get(i).getChampion(), used);
+            distances[index] = Math.max(distances[index], distance);
+            if (distance < compatibilityThreshold) {
+                return i;
+            }
         }
+        return -1;
     }
 
     public static ConnectionGene getConnection (ConnectionGene connectionGene) {
@@ -150,16 +536,7 @@ public class Neat {
     }
 
     public ConnectionGene getConnection (NodeGene node1, NodeGene node2) {
-        ConnectionGene connectionGene = new ConnectionGene(node1, node2);
-
-        if (allConnections.containsKey(connectionGene)) {
-             connectionGene.setInnovationNumber(allConnections.get(connectionGene).getInnovationNumber());
-        } else {
-            connectionGene.setInnovationNumber(allConnections.size() + 1);
-            allConnections.put(connectionGene, connectionGene);
-        }
-
-        return connectionGene;
+        return registry.newConnection(node1, node2);
     }
 
     /**
@@ -168,39 +545,115 @@ public class Neat {
      * @return a new model.genes.NodeGene
      */
     public NodeGene getNode() {
-        NodeGene n = new NodeGene(allNodes.size() + 1);
-        allNodes.add(n);
-        return n;
+        return registry.newNode();
     }
 
     public NodeGene getNode(int id) {
-        if (id <= allNodes.size()) return allNodes.get(id - 1);
+        if (id <= registry.getNodeCount()) return registry.getNode(id);
         return getNode();
     }
 
+    public NeatConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return The distance under which a genome joins a species at the next speciation, which changes between
+     * generations when the configuration targets a number of species.
+     */
+    public double getCompatibilityThreshold() {
+        return compatibilityThreshold;
+    }
+
+    public InnovationRegistry getRegistry() {
+        return registry;
+    }
+
+    public List<Individual> getIndividuals() {
+        return Collections.unmodifiableList(individuals);
+    }
+
+    public List<Species> getSpecies() {
+        return Collections.unmodifiableList(species);
+    }
+
+    /**
+     * How a run executes, as opposed to the hyperparameters of its {@link NeatConfig}: the pool of its parallel work,
+     * its seed, the algorithm of its generators and its innovation registry. Every setter returns the options, and
+     * the options are only read when a run is created, so they can be reused for several runs.
+     */
+    public static final class Options {
+
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+        private long seed = new SplittableRandom().nextLong();
+        private RandomGeneratorFactory<SplittableGenerator> generators = RandomGeneratorFactory.of("SplittableRandom");
+        private InnovationRegistry registry;
+
+        /**
+         * @param pool The pool used to evaluate, speciate and mutate the population, the common pool by default.
+         */
+        public Options pool(ForkJoinPool pool) {
+            this.pool = Objects.requireNonNull(pool, "pool");
+            return this;
+        }
+
+        /**
+         * @param seed The seed of the run, a random one by default.
+         */
+        public Options seed(long seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /**
+         * @param generators The algorithm of the generators, which must be splittable, SplittableRandom by default.
+         */
+        public Options generators(RandomGeneratorFactory<SplittableGenerator> generators) {
+            this.generators = Objects.requireNonNull(generators, "generators");
+            return this;
+        }
+
+        /**
+         * Shares the innovation history of the run with other populations, so that their genomes can be compared and
+         * crossed. The innovation numbers of a shared registry depend on the order in which the populations mutate,
+         * so such runs are not reproducible.
+         * @param registry The registry, either empty or whose first nodes are the inputs, outputs and bias node of
+         *                 the population, or null for a registry of its own, which is the default.
+         */
+        public Options registry(InnovationRegistry registry) {
+            this.registry = registry;
+            return this;
+        }
+    }
+
     public static void main(String[] args) {
 
-        Neat neat = new Neat(3, 1, 250);
+        Neat neat = new Neat(2, 1, 250);
 
-        double[][] inputs = {{0, 0, 1}, {0, 1, 1}, {1, 0, 1}, {1, 1, 1}};
+        double[][] inputs = {{0, 0}, {0, 1}, {1, 0}, {1, 1}};
         double[] expectedOutputs = {0, 1, 1, 0};
+        double[] flatInputs = Arrays.stream(inputs).flatMapToDouble(Arrays::stream).toArray();
 
         double fitnessThreshold = 3.9;
         double bestFitness = 0;
         int generation = 0;
 
         while (bestFitness < fitnessThreshold) {
-            bestFitness = 0;
-            for (Individual individual : neat.individuals) {
+            neat.evaluatePopulation(individual -> {
+                double[] outputs = new double[expectedOutputs.length];
+                individual.calculateOutputs(flatInputs, outputs, inputs.length);
                 double fitness = 0;
                 for (int i = 0; i < inputs.length; i++) {
-                    double[] output = individual.calculateOutput(inputs[i]);
-                    double error = Math.abs(expectedOutputs[i] - output[0]);
+                    double error = Math.abs(expectedOutputs[i] - outputs[i]);
                     fitness += 1 - error;
                 }
-                individual.setScore(fitness);
-                if (fitness > bestFitness) {
-                    bestFitness = fitness;
+                return fitness;
+            });
+
+            bestFitness = 0;
+            for (Individual individual : neat.individuals) {
+                if (individual.getScore() > bestFitness) {
+                    bestFitness = individual.getScore();
                 }
             }
 
@@ -223,11 +676,12 @@ public class Neat {
         }
 
         if (bestIndividual != null) {
+            double[] output = new double[1];
             System.out.println("Demonstrating XOR with the best model:");
             System.out.println("Input1, Input2 -> Predicted Output : Actual Output");
 
             for (int i = 0; i < inputs.length; i++) {
-                double[] output = bestIndividual.calculateOutput(inputs[i]);
+                bestIndividual.calculateOutput(inputs[i], output);
                 System.out.println(inputs[i][0] + ", " + inputs[i][1] + " -> " + output[0] + " : " + expectedOutputs[i]);
             }
 
@@ -0,0 +1,224 @@
+package model;
+
+import model.network.Approximation;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+
+/**
+ * The hyperparameters of a NEAT run. A configuration is immutable, so it can be shared by several runs, and each
+ * parameter has a {@code with} method returning a copy of the configuration with another value.
+ *
+ * @param mutateLinkRate The probability of adding a connection to a genome at every generation.
+ * @param mutateNodeRate The probability of splitting a connection of a genome at every generation.
+ * @param mutateWeightShiftRate The probability of shifting the weight of a connection at every generation.
+ * @param mutateWeightRandomRate The probability of replacing the weight of a connection at every generation.
+ * @param mutateToggleRate The probability of enabling or disabling a connection at every generation.
+ * @param weightShiftStrength The largest shift of a weight.
+ * @param weightRandomStrength The largest absolute value of a new weight.
+ * @param survivalPercentage The percentage of every species surviving to the next generation, between 0 and 100.
+ * @param c1 The weight of the excess genes in the distance between two genomes.
+ * @param c2 The weight of the disjoint genes in the distance between two genomes.
+ * @param c3 The weight of the mean weight difference of the matching genes in the distance between two genomes.
+ * @param compatibilityThreshold The distance under which a genome joins a species, or its initial value when the
+ *                               number of species is targeted.
+ * @param targetSpeciesCount The number of species the compatibility threshold is adjusted toward after every
+ *                           speciation, or 0 to keep the threshold fixed.
+ * @param thresholdStep The largest adjustment of the compatibility threshold in a generation, which is also its
+ *                      smallest value.
+ * @param recurrent Whether new connections may go back to nodes on the left of their source, or to the same node,
+ *                  and carry the activations of one step of the network to the next.
+ * @param mutateActivationRate The probability of changing the activation function of a node at every generation.
+ * @param approximation How the networks compute the activation functions.
+ */
+public record NeatConfig(double mutateLinkRate, double mutateNodeRate, double mutateWeightShiftRate,
+                         double mutateWeightRandomRate, double mutateToggleRate,
+                         double weightShiftStrength, double weightRandomStrength, double survivalPercentage,
+                         double c1, double c2, double c3, double compatibilityThreshold,
+                         int targetSpeciesCount, double thresholdStep, boolean recurrent,
+                         double mutateActivationRate, Approximation approximation) {
+
+    /**
+     * The parameters of the original implementation.
+     */
+    public static final NeatConfig DEFAULT = new NeatConfig(0.3, 0.03, 0.02, 0.02, 0.2,
+            0.3, 1, 80, 1, 1, 0.4, 4, 0, 0.3, false, 0, Approximation.EXACT);
+
+    public NeatConfig {
+        requireProbability(mutateLinkRate, "mutateLinkRate");
+        requireProbability(mutateNodeRate, "mutateNodeRate");
+        requireProbability(mutateWeightShiftRate, "mutateWeightShiftRate");
+        requireProbability(mutateWeightRandomRate, "mutateWeightRandomRate");
+        requireProbability(mutateToggleRate, "mutateToggleRate");
+        requireProbability(mutateActivationRate, "mutateActivationRate");
+        requireNonNegative(weightShiftStrength, "weightShiftStrength");
+        requireNonNegative(weightRandomStrength, "weightRandomStrength");
+        requireNonNegative(c1, "c1");
+        requireNonNegative(c2, "c2");
+        requireNonNegative(c3, "c3");
+        Objects.requireNonNull(approximation, "approximation");
+        if (!(survivalPercentage >= 0 && survivalPercentage <= 100)) {
+            throw new IllegalArgumentException("survivalPercentage must be between 0 and 100");
+        }
+        if (!(compatibilityThreshold > 0)) {
+            throw new IllegalArgumentException("compatibilityThreshold must be positive");
+        }
+        if (targetSpeciesCount < 0) {
+            throw new IllegalArgumentException("targetSpeciesCount must not be negative");
+        }
+        if (!(thresholdStep > 0)) {
+            throw new IllegalArgumentException("thresholdStep must be positive");
+        }
+    }
+
+    private static void requireProbability(double value, String name) {
+        if (!(value >= 0 && value <= 1)) {
+            throw new IllegalArgumentException(name + " must be between 0 and 1");
+        }
+    }
+
+    private static void requireNonNegative(double value, String name) {
+        if (!(value >= 0)) {
+            throw new IllegalArgumentException(name + " must not be negative");
+        }
+    }
+
+    public NeatConfig withMutateLinkRate(double value) {
+        return copy(o -> o.mutateLinkRate = value);
+    }
+
+    public NeatConfig withMutateNodeRate(double value) {
+        return copy(o -> o.mutateNodeRate = value);
+    }
+
+    public NeatConfig withMutateWeightShiftRate(double value) {
+        return copy(o -> o.mutateWeightShiftRate = value);
+    }
+
+    public NeatConfig withMutateWeightRandomRate(double value) {
+        return copy(o -> o.mutateWeightRandomRate = value);
+    }
+
+    public NeatConfig withMutateToggleRate(double value) {
+        return copy(o -> o.mutateToggleRate = value);
+    }
+
+    public NeatConfig withWeightShiftStrength(double value) {
+        return copy(o -> o.weightShiftStrength = value);
+    }
+
+    public NeatConfig withWeightRandomStrength(double value) {
+        return copy(o -> o.weightRandomStrength = value);
+    }
+
+    public NeatConfig withSurvivalPercentage(double value) {
+        return copy(o -> o.survivalPercentage = value);
+    }
+
+    /**
+     * @param c1 The weight of the excess genes.
+     * @param c2 The weight of the disjoint genes.
+     * @param c3 The weight of the mean weight difference of the matching genes.
+     * @return A copy of this configuration with other distance coefficients.
+     */
+    public NeatConfig withDistanceCoefficients(double c1, double c2, double c3) {
+        return copy(o -> {
+            o.c1 = c1;
+            o.c2 = c2;
+            o.c3 = c3;
+        });
+    }
+
+    public NeatConfig withCompatibilityThreshold(double value) {
+        return copy(o -> o.compatibilityThreshold = value);
+    }
+
+    /**
+     * @param count The number of species to keep, or 0 to keep the compatibility threshold fixed.
+     * @param step The largest adjustment of the threshold in a generation.
+     * @return A copy of this configuration adjusting the compatibility threshold toward a number of species.
+     */
+    public NeatConfig withTargetSpeciesCount(int count, double step) {
+        return copy(o -> {
+            o.targetSpeciesCount = count;
+            o.thresholdStep = step;
+        });
+    }
+
+    /**
+     * @param recurrent Whether connections may be recurrent.
+     * @return A copy of this configuration evolving recurrent or feed-forward networks.
+     */
+    public NeatConfig withRecurrent(boolean recurrent) {
+        return copy(o -> o.recurrent = recurrent);
+    }
+
+    public NeatConfig withMutateActivationRate(double value) {
+        return copy(o -> o.mutateActivationRate = value);
+    }
+
+    public NeatConfig withApproximation(Approximation value) {
+        return copy(o -> o.approximation = value);
+    }
+
+    /**
+     * Returns a copy of this configuration, validated like any other.
+     * @param overrides Sets the parameters taking other values in the copy.
+     */
+    private NeatConfig copy(Consumer<Parameters> overrides) {
+        Parameters parameters = new Parameters(this);
+        overrides.accept(parameters);
+        return parameters.build();
+    }
+
+    /**
+     * The parameters of a configuration being copied.
+     */
+    private static final class Parameters {
+
+        double mutateLinkRate;
+        double mutateNodeRate;
+        double mutateWeightShiftRate;
+        double mutateWeightRandomRate;
+        double mutateToggleRate;
+        double weightShiftStrength;
+        double weightRandomStrength;
+        double survivalPercentage;
+        double c1;
+        double c2;
+        double c3;
+        double compatibilityThreshold;
+        int targetSpeciesCount;
+        double thresholdStep;
+        boolean recurrent;
+        double mutateActivationRate;
+        Approximation approximation;
+
+        Parameters(NeatConfig config) {
+            mutateLinkRate = config.mutateLinkRate;
+            mutateNodeRate = config.mutateNodeRate;
+            mutateWeightShiftRate = config.mutateWeightShiftRate;
+            mutateWeightRandomRate = config.mutateWeightRandomRate;
+            mutateToggleRate = config.mutateToggleRate;
+            weightShiftStrength = config.weightShiftStrength;
+            weightRandomStrength = config.weightRandomStrength;
+            survivalPercentage = config.survivalPercentage;
+            c1 = config.c1;
+            c2 = config.c2;
+            c3 = config.c3;
+            compatibilityThreshold = config.compatibilityThreshold;
+            targetSpeciesCount = config.targetSpeciesCount;
+            thresholdStep = config.thresholdStep;
+            recurrent = config.recurrent;
+            mutateActivationRate = config.mutateActivationRate;
+            approximation = config.approximation;
+        }
+
+        NeatConfig build() {
+            return new NeatConfig(mutateLinkRate, mutateNodeRate, mutateWeightShiftRate, mutateWeightRandomRate,
+                    mutateToggleRate, weightShiftStrength, weightRandomStrength, survivalPercentage, c1, c2, c3,
+                    compatibilityThreshold, targetSpeciesCount, thresholdStep, recurrent, mutateActivationRate,
+                    approximation);
+        }
+    }
+}
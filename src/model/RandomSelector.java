@@ -1,30 +1,79 @@
 package model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
 
+/**
+ * Picks elements at random with a probability proportional to their score.
+ * The selector is frozen by the first draw: the scores are turned into an array of prefix sums,
+ * so that every draw is a binary search, and no element can be added afterwards.
+ * <p>
+ * Negative scores are shifted so that the lowest score weighs zero, and if all the weights are zero
+ * the elements are drawn uniformly. A draw therefore only returns null when the selector is empty.
+ */
 public class RandomSelector<T> {
 
     private final ArrayList<T> objects = new ArrayList<>();
-    private final ArrayList<Double> scores = new ArrayList<>();
+    private double[] scores = new double[8];
 
-    private double totalScore = 0;
+    private double[] cumulativeWeights;
+    private double totalWeight;
 
     public void add(T element, double score){
+        if (cumulativeWeights != null) {
+            throw new IllegalStateException("Cannot add to a frozen selector");
+        }
+        if (objects.size() == scores.length) {
+            scores = Arrays.copyOf(scores, scores.length * 2);
+        }
+        scores[objects.size()] = score;
         objects.add(element);
-        scores.add(score);
-        totalScore +=score;
     }
 
-    public T random() {
-        double v = Math.random() * totalScore;
-        double c = 0;
-        for(int i = 0; i < objects.size(); i++){
-            c += scores.get(i);
-            if(c >= v){
-                return objects.get(i);
+    /**
+     * Builds the prefix sums of the weights. Called by the first draw if it was not called before.
+     * @return This selector.
+     */
+    public RandomSelector<T> freeze() {
+        if (cumulativeWeights != null) return this;
+
+        int size = objects.size();
+        double lowest = 0;
+        for (int i = 0; i < size; i++) {
+            lowest = Math.min(lowest, scores[i]);
+        }
+
+        cumulativeWeights = new double[size];
+        double sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += scores[i] - lowest;
+            cumulativeWeights[i] = sum;
+        }
+        totalWeight = sum;
+        return this;
+    }
+
+    public T random(RandomGenerator random) {
+        freeze();
+        if (objects.isEmpty()) return null;
+        if (!(totalWeight > 0) || Double.isInfinite(totalWeight)) {
+            return objects.get(random.nextInt(objects.size()));
+        }
+
+        // The first element whose cumulative weight is above the drawn value, which skips elements weighing zero
+        double v = random.nextDouble() * totalWeight;
+        int low = 0;
+        int high = cumulativeWeights.length - 1;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (cumulativeWeights[middle] > v) {
+                high = middle;
+            } else {
+                low = middle + 1;
             }
         }
-        return null;
+        return objects.get(low);
     }
 
 }
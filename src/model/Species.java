@@ -3,38 +3,61 @@ package model;
 import model.genes.Genome;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 /**
  * @author Andrea Dal Molin
  * Represents a species in the NEAT algorithm.
  * A species groups similar Individuals based on a compatibility threshold.
+ * <p>
+ * The members are kept in an array. Killing the weakest members moves the survivors to the front of the array and
+ * the removed members right after them, so both are available without sorting or copying until a member is added.
  */
 public class Species {
 
-    private final HashSet<Individual> individualMembers = new HashSet<>();
+    private final int id;
+    private Individual[] members = new Individual[8];
+    private int size;
+    private int removed;
     private Individual champion;
     private double score;
 
     /**
      * Constructs a Species with an initial representative.
+     * @param id The id of the species, unique within its run.
      * @param champion The initial representative of the species.
      */
-    public Species(Individual champion) {
+    public Species(int id, Individual champion) {
+        this.id = id;
         this.champion = champion;
-        this.champion.setSpecies(this);
-        individualMembers.add(champion);
+        addIndividual(champion);
         score = 0;
     }
 
+    /**
+     * Recreates a saved species.
+     * @param id The id of the species.
+     * @param champion The representative of the species, which may no longer be one of its members.
+     * @param members The members of the species.
+     * @param score The score of the species.
+     */
+    Species(int id, Individual champion, List<Individual> members, double score) {
+        this.id = id;
+        this.champion = champion;
+        for (Individual individual : members) {
+            addIndividual(individual);
+        }
+        this.score = score;
+    }
+
     /**
      * Adds an individual to the species if it is compatible.
      * @param individual The individual to be added.
      * @return True if added, false otherwise.
      */
     public boolean addIndividualIfCompatible(Individual individual) {
-        if (individual.distance(champion) < Neat.CP) {
-            individual.setSpecies(this);
-            individualMembers.add(individual);
+        if (individual.distance(champion) < champion.getGenome().getNeat().getCompatibilityThreshold()) {
+            addIndividual(individual);
             return true;
         }
         return false;
@@ -46,7 +69,11 @@ public class Species {
      */
     public void addIndividual(Individual individual) {
         individual.setSpecies(this);
-        individualMembers.add(individual);
+        if (size == members.length) {
+            members = Arrays.copyOf(members, size * 2);
+        }
+        members[size++] = individual;
+        removed = 0;
     }
 
     /**
@@ -54,8 +81,8 @@ public class Species {
      * Removes the species association from all members.
      */
     public void goExtinct() {
-        for (Individual individual : individualMembers) {
-            individual.setSpecies(null);
+        for (int i = 0; i < size; i++) {
+            members[i].setSpecies(null);
         }
     }
 
@@ -64,24 +91,25 @@ public class Species {
      */
     public void evaluateScore() {
         score = 0;
-        for (Individual individual : individualMembers) {
-            score += individual.getScore();
+        for (int i = 0; i < size; i++) {
+            score += members[i].getScore();
         }
-        this.score = score / individualMembers.size();
+        this.score = score / size;
     }
 
     /**
      * Gets the current score of the species.
      * The score is typically updated periodically based on the performance of its members.
+     * @param random The generator used to pick the new champion.
      */
-    public void reset() {
-        champion = getRandomClient();
-        for (Individual individual : individualMembers) {
-            individual.setSpecies(null);
+    public void reset(RandomGenerator random) {
+        champion = getRandomClient(random);
+        for (int i = 0; i < size; i++) {
+            members[i].setSpecies(null);
         }
-        individualMembers.clear();
-        individualMembers.add(champion);
-        champion.setSpecies(this);
+        Arrays.fill(members, 0, size + removed, null);
+        size = 0;
+        addIndividual(champion);
         score = 0;
     }
 
@@ -89,6 +117,10 @@ public class Species {
      * Removes a certain percentage of individuals from the species, based on their score.
      * The individuals with the lowest scores are removed first. This is one of the most
      * important parts of NEAT
+     * <p>
+     * The members are partitioned around the last survivor with a quickselect instead of being sorted, so the
+     * survivors and the removed members come out in no particular order, in linear time and without allocating.
+     * Their order only depends on the order of the members and on their scores.
      *
      * @param percentage The percentage of individuals to be removed from the species.
      *                   Must be a value between 0 and 100.
@@ -98,15 +130,53 @@ public class Species {
             throw new IllegalArgumentException("Percentage must be between 0 and 100");
         }
 
-        int clientsToRemove = (int) Math.ceil(individualMembers.size() * (percentage / 100.0));
-        List<Individual> sortedIndividuals = new ArrayList<>(individualMembers);
-        sortedIndividuals.sort(Comparator.comparingDouble(Individual::getScore));
+        int clientsToRemove = (int) Math.ceil(size * (percentage / 100.0));
+        int survivors = size - clientsToRemove;
+        if (survivors > 0 && clientsToRemove > 0) {
+            selectBest(survivors - 1);
+        }
 
-        for (int i = 0; i < clientsToRemove; i++) {
-            Individual removedIndividual = sortedIndividuals.get(i);
-            removedIndividual.setSpecies(null);
-            individualMembers.remove(removedIndividual);
+        for (int i = survivors; i < size; i++) {
+            members[i].setSpecies(null);
         }
+        removed = clientsToRemove;
+        size = survivors;
+    }
+
+    /**
+     * Rearranges the members so that the ones before an index all score at least as much as the member at that index,
+     * and the ones after it at most as much. The pivots are medians of three, and the partition of Hoare moves the
+     * members equal to the pivot to both sides, so that equal scores do not make it quadratic.
+     * @param k The index of the member to select.
+     */
+    private void selectBest(int k) {
+        int low = 0;
+        int high = size - 1;
+        while (low < high) {
+            double pivot = median(members[low].getScore(), members[(low + high) >>> 1].getScore(), members[high].getScore());
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (members[i].getScore() > pivot) i++;
+                while (members[j].getScore() < pivot) j--;
+                if (i <= j) {
+                    Individual swap = members[i];
+                    members[i++] = members[j];
+                    members[j--] = swap;
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private static double median(double a, double b, double c) {
+        return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
     }
 
     /**
@@ -114,27 +184,50 @@ public class Species {
      * The method selects two individuals and crosses their genomes. The individual with the higher score
      * is chosen as the first parent in the crossover.
      *
+     * @param random The generator used to pick the parents and to cross them.
      * @return A new Genome resulting from the crossover of two selected individuals' genomes.
      */
-    public Genome breed () {
-        Individual individual1 = getRandomClient();
-        Individual individual2 = getRandomClient();
+    public Genome breed (RandomGenerator random) {
+        Individual individual1 = getRandomClient(random);
+        Individual individual2 = getRandomClient(random);
 
-        if (individual1.getScore() > individual2.getScore()) return Genome.crossover(individual1.getGenome(), individual2.getGenome());
-        return Genome.crossover(individual2.getGenome(), individual1.getGenome());
+        if (individual1.getScore() > individual2.getScore()) return Genome.crossover(individual1.getGenome(), individual2.getGenome(), random);
+        return Genome.crossover(individual2.getGenome(), individual1.getGenome(), random);
     }
 
     public int size () {
-        return individualMembers.size();
+        return size;
     }
 
     public double getScore() {
         return score;
     }
 
-    private Individual getRandomClient() {
-        Random random = new Random();
-        int randomIndex = random.nextInt(individualMembers.size());
-        return new ArrayList<>(individualMembers).get(randomIndex);
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the members of the species, which are the survivors after {@link #kill(double)}.
+     * @return A read-only view of the members.
+     */
+    public List<Individual> getIndividuals() {
+        return Collections.unmodifiableList(Arrays.asList(members).subList(0, size));
+    }
+
+    /**
+     * Returns the members removed by the last call to {@link #kill(double)}.
+     * @return A read-only view of the removed members, only valid until a member is added.
+     */
+    public List<Individual> getRemoved() {
+        return Collections.unmodifiableList(Arrays.asList(members).subList(size, size + removed));
+    }
+
+    public Individual getChampion() {
+        return champion;
+    }
+
+    private Individual getRandomClient(RandomGenerator random) {
+        return members[random.nextInt(size)];
     }
 }
@@ -0,0 +1,49 @@
+package model.genes;
+
+/**
+ * The activation function of a node, applied to the weighted sum of its inputs.
+ * The activation of a node is part of the genes of a genome and may mutate; new nodes use {@link #SIGMOID}.
+ */
+public enum Activation {
+
+    /**
+     * The steepened sigmoid of the paper, with a factor of -4.9.
+     */
+    SIGMOID,
+    TANH,
+    RELU,
+    IDENTITY,
+    /**
+     * The gaussian exp(-x * x).
+     */
+    GAUSSIAN;
+
+    private static final Activation[] VALUES = values();
+
+    /**
+     * Applies the exact function.
+     * @param x The weighted sum of the inputs of a node.
+     * @return The activation of the node.
+     */
+    public double apply(double x) {
+        return switch (this) {
+            case SIGMOID -> 1d / (1 + Math.exp(-4.9 * x));
+            case TANH -> Math.tanh(x);
+            case RELU -> Math.max(0, x);
+            case IDENTITY -> x;
+            case GAUSSIAN -> Math.exp(-x * x);
+        };
+    }
+
+    /**
+     * @param ordinal The ordinal of an activation.
+     * @return The activation.
+     * @throws IllegalArgumentException If there is no activation with this ordinal.
+     */
+    public static Activation of(int ordinal) {
+        if (ordinal < 0 || ordinal >= VALUES.length) {
+            throw new IllegalArgumentException("Unknown activation " + ordinal);
+        }
+        return VALUES[ordinal];
+    }
+}
@@ -69,6 +69,6 @@ public class ConnectionGene extends Gene {
     }
 
     public int hashCode() {
-        return from.getInnovationNumber() + to.getInnovationNumber();
+        return 31 * from.getInnovationNumber() + to.getInnovationNumber();
     }
 }
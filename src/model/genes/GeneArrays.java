@@ -0,0 +1,246 @@
+package model.genes;
+
+import java.util.Arrays;
+
+/**
+ * The genes of a genome, stored as parallel primitive arrays.
+ * Connections are sorted by innovation number and node ids are sorted in ascending order,
+ * so that lookups are binary searches and comparing two genomes is a linear merge.
+ * The activation of every node is the ordinal of its {@link Activation}, parallel to the node ids.
+ * <p>
+ * The arrays are in three groups: the ids of the connections, the weights and states of the connections, and the
+ * nodes with their activations. A group may be shared with other genes, typically between a parent and its children,
+ * in which case it is copied before being written, by whichever side writes first. The arrays may therefore be read
+ * directly, but must only be written through the methods of this class.
+ */
+final class GeneArrays {
+
+    /**
+     * The room left when copying shared arrays, enough for the structural mutations of a generation.
+     */
+    private static final int SHARED_ROOM = 2;
+
+    int connectionCount;
+    int[] innovations;
+    int[] from;
+    int[] to;
+    double[] weights;
+    boolean[] enabled;
+
+    int nodeCount;
+    int[] nodes;
+    byte[] activations;
+
+    private boolean sharedConnections;
+    private boolean sharedValues;
+    private boolean sharedNodes;
+
+    GeneArrays(int connectionCapacity, int nodeCapacity) {
+        innovations = new int[connectionCapacity];
+        from = new int[connectionCapacity];
+        to = new int[connectionCapacity];
+        weights = new double[connectionCapacity];
+        enabled = new boolean[connectionCapacity];
+        nodes = new int[nodeCapacity];
+        activations = new byte[nodeCapacity];
+    }
+
+    private GeneArrays(GeneArrays genes) {
+        connectionCount = genes.connectionCount;
+        innovations = genes.innovations;
+        from = genes.from;
+        to = genes.to;
+        weights = genes.weights;
+        enabled = genes.enabled;
+        nodeCount = genes.nodeCount;
+        nodes = genes.nodes;
+        activations = genes.activations;
+        sharedConnections = true;
+        sharedValues = true;
+        sharedNodes = true;
+    }
+
+    /**
+     * Returns a copy of these genes sharing all their arrays, which are copied when either side writes them.
+     * The genes must not be written while they are shared by other threads.
+     */
+    GeneArrays copy() {
+        sharedConnections = true;
+        sharedValues = true;
+        sharedNodes = true;
+        return new GeneArrays(this);
+    }
+
+    /**
+     * Finds a connection by innovation number.
+     * @param innovation The innovation number.
+     * @return The index of the connection, or a negative value if the genome does not have it.
+     */
+    int indexOfConnection(int innovation) {
+        return Arrays.binarySearch(innovations, 0, connectionCount, innovation);
+    }
+
+    int indexOfNode(int id) {
+        return Arrays.binarySearch(nodes, 0, nodeCount, id);
+    }
+
+    int highestInnovation() {
+        return connectionCount == 0 ? 0 : innovations[connectionCount - 1];
+    }
+
+    void setWeight(int index, double weight) {
+        ownConnectionValues(connectionCount);
+        weights[index] = weight;
+    }
+
+    void setEnabled(int index, boolean isEnabled) {
+        ownConnectionValues(connectionCount);
+        enabled[index] = isEnabled;
+    }
+
+    void setActivation(int index, byte activation) {
+        ownNodes(nodeCount);
+        activations[index] = activation;
+    }
+
+    /**
+     * Inserts a connection at the position given by its innovation number.
+     * New innovations are usually the highest of the genome, in which case nothing is shifted.
+     */
+    void insertConnection(int innovation, int fromId, int toId, double weight, boolean isEnabled) {
+        int index = -indexOfConnection(innovation) - 1;
+        ownConnections(connectionCount + 1);
+        ownConnectionValues(connectionCount + 1);
+        int moved = connectionCount - index;
+        System.arraycopy(innovations, index, innovations, index + 1, moved);
+        System.arraycopy(from, index, from, index + 1, moved);
+        System.arraycopy(to, index, to, index + 1, moved);
+        System.arraycopy(weights, index, weights, index + 1, moved);
+        System.arraycopy(enabled, index, enabled, index + 1, moved);
+        innovations[index] = innovation;
+        from[index] = fromId;
+        to[index] = toId;
+        weights[index] = weight;
+        enabled[index] = isEnabled;
+        connectionCount++;
+    }
+
+    void removeConnection(int index) {
+        ownConnections(connectionCount);
+        ownConnectionValues(connectionCount);
+        int moved = connectionCount - index - 1;
+        System.arraycopy(innovations, index + 1, innovations, index, moved);
+        System.arraycopy(from, index + 1, from, index, moved);
+        System.arraycopy(to, index + 1, to, index, moved);
+        System.arraycopy(weights, index + 1, weights, index, moved);
+        System.arraycopy(enabled, index + 1, enabled, index, moved);
+        connectionCount--;
+    }
+
+    void addNode(int id) {
+        int index = indexOfNode(id);
+        if (index >= 0) return;
+        index = -index - 1;
+        ownNodes(nodeCount + 1);
+        System.arraycopy(nodes, index, nodes, index + 1, nodeCount - index);
+        System.arraycopy(activations, index, activations, index + 1, nodeCount - index);
+        nodes[index] = id;
+        activations[index] = 0;
+        nodeCount++;
+    }
+
+    /**
+     * Makes the nodes the ids from 1 to a given base and the nodes at both ends of every connection, keeping the node
+     * ids sorted and unique. The activations of the nodes are taken from a parent, the nodes it does not have using
+     * the default one. The nodes stay shared with the parent if it has exactly these nodes, which is the usual case.
+     * @param base The number of nodes every genome starts with.
+     * @param parent The genes the nodes come from.
+     */
+    void inheritNodes(int base, GeneArrays parent) {
+        if (parent.hasNodes(base, this)) {
+            parent.sharedNodes = true;
+            sharedNodes = true;
+            nodes = parent.nodes;
+            activations = parent.activations;
+            nodeCount = parent.nodeCount;
+            return;
+        }
+
+        int[] all = new int[base + 2 * connectionCount];
+        for (int i = 0; i < base; i++) {
+            all[i] = i + 1;
+        }
+        System.arraycopy(from, 0, all, base, connectionCount);
+        System.arraycopy(to, 0, all, base + connectionCount, connectionCount);
+        Arrays.sort(all);
+
+        int unique = 0;
+        for (int i = 0; i < all.length; i++) {
+            if (unique == 0 || all[unique - 1] != all[i]) {
+                all[unique++] = all[i];
+            }
+        }
+        nodes = all;
+        nodeCount = unique;
+        sharedNodes = false;
+        activations = new byte[all.length];
+        for (int i = 0, j = 0; i < unique; i++) {
+            while (j < parent.nodeCount && parent.nodes[j] < all[i]) j++;
+            activations[i] = j < parent.nodeCount && parent.nodes[j] == all[i] ? parent.activations[j] : 0;
+        }
+    }
+
+    /**
+     * @return True if the nodes are exactly the ids from 1 to a base and the ends of the connections of some genes.
+     */
+    private boolean hasNodes(int base, GeneArrays genes) {
+        if (nodeCount < base || (base > 0 && nodes[base - 1] != base)) return false;
+
+        // Node ids are sorted and positive, so the first ones are the base, and every other one must be an end
+        boolean[] ends = new boolean[nodeCount - base];
+        int found = 0;
+        for (int i = 0; i < 2 * genes.connectionCount; i++) {
+            int index = indexOfNode(i < genes.connectionCount ? genes.from[i] : genes.to[i - genes.connectionCount]);
+            if (index < 0) return false;
+            if (index >= base && !ends[index - base]) {
+                ends[index - base] = true;
+                found++;
+            }
+        }
+        return found == ends.length;
+    }
+
+    /**
+     * Makes the ids of the connections writable with room for a number of connections.
+     */
+    private void ownConnections(int capacity) {
+        if (!sharedConnections && capacity <= innovations.length) return;
+        int length = sharedConnections ? Math.max(capacity, connectionCount + SHARED_ROOM) : Math.max(capacity, innovations.length * 2);
+        innovations = Arrays.copyOf(innovations, length);
+        from = Arrays.copyOf(from, length);
+        to = Arrays.copyOf(to, length);
+        sharedConnections = false;
+    }
+
+    /**
+     * Makes the weights and states of the connections writable with room for a number of connections.
+     */
+    private void ownConnectionValues(int capacity) {
+        if (!sharedValues && capacity <= weights.length) return;
+        int length = sharedValues ? Math.max(capacity, connectionCount + SHARED_ROOM) : Math.max(capacity, weights.length * 2);
+        weights = Arrays.copyOf(weights, length);
+        enabled = Arrays.copyOf(enabled, length);
+        sharedValues = false;
+    }
+
+    /**
+     * Makes the nodes writable with room for a number of nodes.
+     */
+    private void ownNodes(int capacity) {
+        if (!sharedNodes && capacity <= nodes.length) return;
+        int length = sharedNodes ? Math.max(capacity, nodeCount + SHARED_ROOM) : Math.max(Math.max(4, capacity), nodes.length * 2);
+        nodes = Arrays.copyOf(nodes, length);
+        activations = Arrays.copyOf(activations, length);
+        sharedNodes = false;
+    }
+}
@@ -1,215 +1,428 @@
 package model.genes;
 
+import model.InnovationRegistry;
 import model.Neat;
+import model.NeatConfig;
+import model.network.Network;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.random.RandomGenerator;
 
 /**
  * Represents a genome in the NEAT algorithm.
  * A genome consists of a collection of nodes and connections, representing a neural network.
+ * The genes are kept in parallel primitive arrays sorted by innovation number, while the maps returned by
+ * {@link #getNodes()} and {@link #getConnections()} are read-only views over them.
+ * <p>
+ * The compiled network is cached until the structure of the genome changes, that is until a connection or a node is
+ * added. Changes of weights, of the states of the connections and of the activation functions patch the cached
+ * network instead, so their cost does not grow with the size of the genome.
  */
 public class Genome {
 
+    private static final AtomicInteger REVISIONS = new AtomicInteger();
+
     private final Neat neat;
-    private final Map<Integer, NodeGene> nodes = new TreeMap<>();
-    private final Map<Integer, ConnectionGene> connections = new TreeMap<>();
+    private final InnovationRegistry registry;
+    private final GeneArrays genes;
+    private int[] topologicalOrder;
+    private Network network;
+    private int revision = REVISIONS.incrementAndGet();
+    private StructuralMutation pending;
 
     public Genome(Neat neat) {
+        this(neat, new GeneArrays(8, 8));
+    }
+
+    private Genome(Neat neat, GeneArrays genes) {
         this.neat = neat;
+        this.registry = neat.getRegistry();
+        this.genes = genes;
+    }
+
+    /**
+     * Copies this genome into a population sharing the same innovation registry, for instance another island.
+     * The copy shares the genes of this genome until one of them changes.
+     * @param neat The population of the copy.
+     * @return The copy.
+     */
+    public Genome copy(Neat neat) {
+        if (neat.getRegistry() != registry) {
+            throw new IllegalArgumentException("The population does not share the registry of the genome");
+        }
+        return new Genome(neat, genes.copy());
     }
 
     /**
      * Calculates the output of the neural network represented by this genome.
-     * The method performs forward propagation through the network.
+     * The method evaluates the compiled network, which is rebuilt only after the genome has changed.
      * @param inputs The input values to the network.
      * @return The output values from the network.
      */
     public double[] calculateOutput(double[] inputs) {
-        // Step 1: Set input values
-        setInputs(inputs);
+        Network network = getNetwork();
+        double[] outputs = new double[network.getOutputSize()];
+        network.calculateOutput(inputs, outputs);
+        return outputs;
+    }
 
-        // Step 1.5: Initialize connections for each node
-        initializeNodeConnections();
+    /**
+     * Calculates the output of the neural network represented by this genome into a given buffer.
+     * @param inputs The input values to the network.
+     * @param outputs The buffer receiving the output values.
+     */
+    public void calculateOutput(double[] inputs, double[] outputs) {
+        getNetwork().calculateOutput(inputs, outputs);
+    }
 
-        // Step 2: Forward propagation
-        forwardPropagation();
+    /**
+     * Calculates the output of the neural network for many samples at once.
+     * @param inputs The input values in row-major order, one row of input values per sample.
+     * @param outputs The buffer receiving the output values in row-major order, one row of output values per sample.
+     * @param rows The number of samples.
+     */
+    public void calculateOutputs(double[] inputs, double[] outputs, int rows) {
+        getNetwork().calculateOutputs(inputs, outputs, rows);
+    }
 
-        // Step 3: Collect and return output values
-        return getOutputs();
+    /**
+     * Calculates the output of the neural network for many samples at once.
+     * @param inputs The input values, one row per sample.
+     * @param outputs The buffer receiving the output values, one row per sample.
+     */
+    public void calculateOutputs(double[][] inputs, double[][] outputs) {
+        getNetwork().calculateOutputs(inputs, outputs);
     }
 
-    private void setInputs(double[] inputs) {
-        int inputIndex = 0;
-        for (NodeGene node : nodes.values()) {
-            if (node.getType() == NodeType.INPUT && inputIndex < inputs.length) {
-                node.setOutput(inputs[inputIndex++]);
-            }
+    /**
+     * Returns the compiled network of this genome, compiling it if the structure of the genome changed since the last
+     * call.
+     * @return The compiled network.
+     */
+    public Network getNetwork() {
+        if (network == null) {
+            network = Network.compile(this);
         }
+        return network;
     }
 
-    private void initializeNodeConnections() {
-        // Clear existing connections in each node
-        for (NodeGene node : nodes.values()) {
-            node.clearConnections();
+    /**
+     * Returns the ids of the nodes of this genome in an order in which every node comes after the sources of its
+     * connections. Input nodes come first in innovation order, followed by the other nodes in the order they become
+     * ready. Disabled connections are part of the ordering, so that enabling or disabling a connection does not change
+     * it, while recurrent connections are left out, so that the order always exists. The order is cached until the
+     * structure of the genome changes.
+     * @return The node ids in topological order, which must not be modified.
+     */
+    public int[] getTopologicalOrder() {
+        if (topologicalOrder == null) {
+            topologicalOrder = computeTopologicalOrder();
         }
+        return topologicalOrder;
+    }
 
-        // Add each connection to the corresponding nodes
-        for (ConnectionGene connection : connections.values()) {
-            NodeGene from = connection.getFrom();
-            NodeGene to = connection.getTo();
+    private int[] computeTopologicalOrder() {
+        int nodeCount = genes.nodeCount;
+        int connectionCount = genes.connectionCount;
+
+        // Outgoing edges of every node, by index in the node array
+        int[] pending = new int[nodeCount];
+        int[] outStart = new int[nodeCount + 1];
+        int[] fromIndex = new int[connectionCount];
+        int[] toIndex = new int[connectionCount];
+        for (int i = 0; i < connectionCount; i++) {
+            fromIndex[i] = genes.indexOfNode(genes.from[i]);
+            toIndex[i] = genes.indexOfNode(genes.to[i]);
+            if (fromIndex[i] < 0 || toIndex[i] < 0 || registry.getNode(genes.to[i]).getType().isSensor()
+                    || isRecurrent(i)) {
+                fromIndex[i] = -1;
+                continue;
+            }
+            pending[toIndex[i]]++;
+            outStart[fromIndex[i] + 1]++;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            outStart[i + 1] += outStart[i];
+        }
+        int[] fill = Arrays.copyOf(outStart, nodeCount);
+        int[] outTarget = new int[outStart[nodeCount]];
+        for (int i = 0; i < connectionCount; i++) {
+            if (fromIndex[i] >= 0) {
+                outTarget[fill[fromIndex[i]]++] = toIndex[i];
+            }
+        }
 
-            ConnectionGene con = new ConnectionGene(from, to);
-            con.setWeight(connection.getWeight());
-            con.setEnabled(connection.isEnabled());
+        // Kahn's algorithm over a queue of node indices: inputs first, then nodes in the order they become ready
+        int[] queue = new int[nodeCount];
+        int head = 0;
+        int tail = 0;
+        for (int i = 0; i < nodeCount; i++) {
+            if (registry.getNode(genes.nodes[i]).getType() == NodeType.INPUT) queue[tail++] = i;
+        }
+        for (int i = 0; i < nodeCount; i++) {
+            if (pending[i] == 0 && registry.getNode(genes.nodes[i]).getType() != NodeType.INPUT) queue[tail++] = i;
+        }
+        while (head < tail) {
+            int node = queue[head++];
+            for (int e = outStart[node]; e < outStart[node + 1]; e++) {
+                if (--pending[outTarget[e]] == 0) {
+                    queue[tail++] = outTarget[e];
+                }
+            }
+        }
 
-            to.addConnection(con);
+        if (tail != nodeCount) {
+            throw new IllegalStateException("The genome contains a cycle");
         }
+        for (int i = 0; i < nodeCount; i++) {
+            queue[i] = genes.nodes[queue[i]];
+        }
+        return queue;
     }
 
-    private void forwardPropagation() {
-        for (NodeGene node : nodes.values()) {
-            if (node.getType() != NodeType.INPUT) { // Skip input nodes
-                node.calculateOutput();
-            }
-        }
+    /**
+     * Mutates this genome, first its structure and then its weights.
+     * @param random The generator deciding the mutations.
+     */
+    public void mutate(RandomGenerator random) {
+        mutateStructure(random);
+        mutateWeights(random);
     }
 
-    private double[] getOutputs() {
-        List<Double> outputsList = new ArrayList<>();
-        for (NodeGene node : nodes.values()) {
-            if (node.getType() == NodeType.OUTPUT) {
-                outputsList.add(node.getOutput());
-            }
-        }
+    /**
+     * Applies the mutations that may add connections or nodes, and therefore register new innovations.
+     * @param random The generator deciding the mutations.
+     */
+    public void mutateStructure(RandomGenerator random) {
+        drawStructure(random);
+        applyStructure();
+    }
 
-        double[] outputs = new double[outputsList.size()];
-        for (int i = 0; i < outputs.length; i++) {
-            outputs[i] = outputsList.get(i);
+    /**
+     * Decides the structural mutations of this genome and registers their innovations, without changing the genes.
+     * Drawing the mutations of a population in a fixed order keeps its innovation numbers reproducible, while
+     * {@link #applyStructure()}, which copies and shifts the genes, may then run for all the genomes in parallel.
+     * The mutations are the same as those of {@link #mutateStructure(RandomGenerator)}.
+     * @param random The generator deciding the mutations.
+     */
+    public void drawStructure(RandomGenerator random) {
+        NeatConfig config = neat.getConfig();
+        StructuralMutation mutation = new StructuralMutation();
+        if (random.nextDouble() < config.mutateLinkRate()) {
+            drawLink(random, mutation);
         }
-        return outputs;
+        if (random.nextDouble() < config.mutateNodeRate()) {
+            drawNode(random, mutation);
+        }
+        pending = mutation.linkInnovation != 0 || mutation.middleId != 0 ? mutation : null;
     }
 
-    public void mutate() {
-        if (Math.random() < Neat.MUTATE_LINK_RATE) {
-            mutateLink();
+    /**
+     * Applies the structural mutations decided by the last call to {@link #drawStructure(RandomGenerator)}, if any.
+     * Only touches the genes of this genome.
+     */
+    public void applyStructure() {
+        StructuralMutation mutation = pending;
+        if (mutation == null) return;
+        pending = null;
+
+        if (mutation.linkInnovation != 0) {
+            genes.insertConnection(mutation.linkInnovation, mutation.linkFrom, mutation.linkTo, mutation.linkWeight,
+                    true);
+        }
+        if (mutation.middleId != 0) {
+            int index = genes.indexOfConnection(mutation.splitInnovation);
+            int fromId = genes.from[index];
+            int toId = genes.to[index];
+            double weight = genes.weights[index];
+            genes.removeConnection(index);
+            genes.insertConnection(mutation.fromMiddleInnovation, fromId, mutation.middleId, 1, true);
+            genes.insertConnection(mutation.middleToInnovation, mutation.middleId, toId, weight, true);
+            genes.addNode(mutation.middleId);
         }
-        if (Math.random() < Neat.MUTATE_NODE_RATE) {
-            mutateNode();
+        structureChanged();
+    }
+
+    /**
+     * Applies the mutations that only change the weights and the state of existing connections, and the activation
+     * functions of existing nodes. No random number is drawn for the activations when they never mutate.
+     * @param random The generator deciding the mutations.
+     */
+    public void mutateWeights(RandomGenerator random) {
+        NeatConfig config = neat.getConfig();
+        if (random.nextDouble() < config.mutateWeightShiftRate()) {
+            mutateWeightShift(random);
         }
-        if (Math.random() < Neat.MUTATE_WEIGHT_SHIFT_RATE) {
-            mutateWeightShift();
+        if (random.nextDouble() < config.mutateWeightRandomRate()) {
+            mutateWeightRandom(random);
         }
-        if (Math.random() < Neat.MUTATE_WEIGHT_RANDOM_RATE) {
-            mutateWeightRandom();
+        if (random.nextDouble() < config.mutateToggleRate()) {
+            mutateLinkToggle(random);
         }
-        if (Math.random() < Neat.MUTATE_TOGGLE_RATE) {
-            mutateLinkToggle();
+        if (config.mutateActivationRate() > 0 && random.nextDouble() < config.mutateActivationRate()) {
+            mutateActivation(random);
         }
     }
 
-    public void mutateLink() {
-        for (int i = 0; i < 100; i++) {
-
-            NodeGene a = getRandomNode();
-            NodeGene b = getRandomNode();
+    /**
+     * Adds a connection between two random nodes that are not connected yet. Connections go from left to right,
+     * unless the configuration is recurrent, in which case they may go in any direction, except into an input or the
+     * bias node.
+     * @param random The generator choosing the nodes and the weight.
+     */
+    public void mutateLink(RandomGenerator random) {
+        StructuralMutation mutation = new StructuralMutation();
+        drawLink(random, mutation);
+        pending = mutation;
+        applyStructure();
+    }
 
-            if (a.getX() == b.getX()) {
-                continue;
-            }
+    private void drawLink(RandomGenerator random, StructuralMutation mutation) {
+        boolean recurrent = neat.getConfig().recurrent();
+        for (int i = 0; i < 100; i++) {
 
-            ConnectionGene connectionGene;
+            NodeGene a = getRandomNode(random);
+            NodeGene b = getRandomNode(random);
 
-            if (a.getX() < b.getX()) {
-                connectionGene = new ConnectionGene(a, b);
+            NodeGene from;
+            NodeGene to;
+            if (recurrent) {
+                if (b.getType().isSensor()) {
+                    continue;
+                }
+                from = a;
+                to = b;
             } else {
-                connectionGene = new ConnectionGene(b, a);
+                if (a.getX() == b.getX()) {
+                    continue;
+                }
+                from = a.getX() < b.getX() ? a : b;
+                to = a.getX() < b.getX() ? b : a;
             }
 
-            if (connections.containsValue(connectionGene)) {
+            int innovation = registry.findInnovation(from, to);
+            if (innovation != 0 && genes.indexOfConnection(innovation) >= 0) {
                 continue;
             }
 
-            connectionGene = neat.getConnection(connectionGene.getFrom(), connectionGene.getTo());
-            connectionGene.setWeight((Math.random() * 2 - 1) * Neat.WEIGHT_RANDOM_STRENGTH);
-
-            connections.put(connectionGene.getInnovationNumber(), connectionGene);
+            mutation.linkInnovation = registry.getInnovation(from, to);
+            mutation.linkFrom = from.getInnovationNumber();
+            mutation.linkTo = to.getInnovationNumber();
+            mutation.linkWeight = (random.nextDouble() * 2 - 1) * neat.getConfig().weightRandomStrength();
             return;
         }
     }
 
-    public void mutateNode() {
-        ConnectionGene connectionGene = getRandomConnection();
-
-        if (connectionGene == null) return;
-
-        NodeGene from = connectionGene.getFrom();
-        NodeGene to = connectionGene.getTo();
-
-        NodeGene middle = neat.getNode();
-        middle.setX((from.getX() + to.getX()) / 2);
-        middle.setY((from.getY() + to.getY()) / 2 + Math.random() * 0.1 - 0.05);
-
-        ConnectionGene connection1 = neat.getConnection(from, middle);
-        ConnectionGene connection2 = neat.getConnection(middle, to);
-
-        connection1.setWeight(1);
-        connection2.setWeight(connectionGene.getWeight());
-        connection2.setEnabled(connection2.isEnabled());
+    public void mutateNode(RandomGenerator random) {
+        StructuralMutation mutation = new StructuralMutation();
+        drawNode(random, mutation);
+        pending = mutation;
+        applyStructure();
+    }
 
-        connections.remove(connectionGene.getInnovationNumber());
-        connections.put(connection1.getInnovationNumber(), connection1);
-        connections.put(connection2.getInnovationNumber(), connection2);
+    /**
+     * Chooses a connection to split among the connections of the genome and the link drawn before, if any, as if
+     * the link had already been added.
+     */
+    private void drawNode(RandomGenerator random, StructuralMutation mutation) {
+        int count = genes.connectionCount + (mutation.linkInnovation != 0 ? 1 : 0);
+        if (count == 0) return;
+        int index = random.nextInt(count);
+
+        int fromId;
+        int toId;
+        if (mutation.linkInnovation != 0) {
+            int linkIndex = -genes.indexOfConnection(mutation.linkInnovation) - 1;
+            if (index == linkIndex) {
+                mutation.splitInnovation = mutation.linkInnovation;
+                fromId = mutation.linkFrom;
+                toId = mutation.linkTo;
+            } else {
+                index = index < linkIndex ? index : index - 1;
+                mutation.splitInnovation = genes.innovations[index];
+                fromId = genes.from[index];
+                toId = genes.to[index];
+            }
+        } else {
+            mutation.splitInnovation = genes.innovations[index];
+            fromId = genes.from[index];
+            toId = genes.to[index];
+        }
+        NodeGene from = registry.getNode(fromId);
+        NodeGene to = registry.getNode(toId);
+
+        // The same split made by other genomes reuses the same node, and splitting again a connection that was
+        // split before and added back uses the next node splitting it
+        double y = (from.getY() + to.getY()) / 2 + random.nextDouble() * 0.1 - 0.05;
+        NodeGene middle = registry.getSplitNode(mutation.splitInnovation, from, to, y);
+        for (int ordinal = 1; genes.indexOfNode(middle.getInnovationNumber()) >= 0; ordinal++) {
+            middle = registry.getSplitNode(mutation.splitInnovation, ordinal, from, to, y);
+        }
 
-        nodes.put(middle.getInnovationNumber(), middle);
+        mutation.middleId = middle.getInnovationNumber();
+        mutation.fromMiddleInnovation = registry.getInnovation(from, middle);
+        mutation.middleToInnovation = registry.getInnovation(middle, to);
     }
 
-    public void mutateWeightShift() {
-        ConnectionGene randomConnection = getRandomConnection();
+    public void mutateWeightShift(RandomGenerator random) {
+        int index = getRandomConnection(random);
 
-        if(randomConnection != null) {
-            randomConnection.setWeight(randomConnection.getWeight() + (Math.random() * 2 - 1) * Neat.WEIGHT_SHIFT_STRENGTH);
+        if(index >= 0) {
+            genes.setWeight(index, genes.weights[index]
+                    + (random.nextDouble() * 2 - 1) * neat.getConfig().weightShiftStrength());
+            weightChanged(index);
         }
     }
 
-    public void mutateWeightRandom() {
-        ConnectionGene randomConnection = getRandomConnection();
+    public void mutateWeightRandom(RandomGenerator random) {
+        int index = getRandomConnection(random);
 
-        if(randomConnection != null) {
-            randomConnection.setWeight((Math.random() * 2 - 1) * Neat.WEIGHT_RANDOM_STRENGTH);
+        if(index >= 0) {
+            genes.setWeight(index, (random.nextDouble() * 2 - 1) * neat.getConfig().weightRandomStrength());
+            weightChanged(index);
         }
     }
 
-    public void mutateLinkToggle() {
-        ConnectionGene randomConnection = getRandomConnection();
+    public void mutateLinkToggle(RandomGenerator random) {
+        int index = getRandomConnection(random);
 
-        if(randomConnection != null) {
-            randomConnection.setEnabled(!randomConnection.isEnabled());
+        if(index >= 0) {
+            genes.setEnabled(index, !genes.enabled[index]);
+            if (network != null) {
+                network.setEnabled(index, genes.enabled[index], genes.weights[index]);
+            }
         }
     }
 
-    public double distance(Genome g2) {
-        Genome g1 = this;
-
-        int highestInnovationGene1 = 0;
-        if(!g1.getConnections().isEmpty()){
-            highestInnovationGene1 = g1.getConnections().keySet().stream().max(Integer::compare).get();
-        }
+    /**
+     * Gives another activation function to a random node that is not an input or the bias node.
+     * @param random The generator choosing the node and the function.
+     */
+    public void mutateActivation(RandomGenerator random) {
+        int index = random.nextInt(genes.nodeCount);
+        if (registry.getNode(genes.nodes[index]).getType().isSensor()) return;
 
-        int highestInnovationGene2 = 0;
-        if(!g2.getConnections().isEmpty()){
-            highestInnovationGene2 = g2.getConnections().keySet().stream().max(Integer::compare).get();
-        }
+        int count = Activation.values().length;
+        genes.setActivation(index, (byte) ((genes.activations[index] + 1 + random.nextInt(count - 1)) % count));
+        activationChanged(index);
+    }
 
-        if (highestInnovationGene1 < highestInnovationGene2) {
-            Genome g = g1;
-            g1 = g2;
-            g2 = g;
+    /**
+     * Computes the compatibility distance between two genomes as a linear merge of their sorted genes.
+     * @param other The other genome.
+     * @return The distance, based on the excess and disjoint genes and the weight difference of the matching genes.
+     */
+    public double distance(Genome other) {
+        GeneArrays genes1 = this.genes;
+        GeneArrays genes2 = other.genes;
+
+        if (genes1.highestInnovation() < genes2.highestInnovation()) {
+            GeneArrays g = genes1;
+            genes1 = genes2;
+            genes2 = g;
         }
 
-        // Convert TreeMap values to ArrayLists for indexed access
-        List<ConnectionGene> g1Connections = new ArrayList<>(g1.getConnections().values());
-        List<ConnectionGene> g2Connections = new ArrayList<>(g2.getConnections().values());
-
         int indexG1 = 0;
         int indexG2 = 0;
 
@@ -218,21 +431,17 @@ public class Genome {
         double weightDiff = 0;
         int similar = 0;
 
-        while (indexG1 < g1.getConnections().size() && indexG2 < g2.getConnections().size()) {
-            ConnectionGene gene1 = g1Connections.get(indexG1);
-            ConnectionGene gene2 = g2Connections.get(indexG2);
-
-            int in1 = gene1.getInnovationNumber();
-            int in2 = gene2.getInnovationNumber();
+        while (indexG1 < genes1.connectionCount && indexG2 < genes2.connectionCount) {
+            int in1 = genes1.innovations[indexG1];
+            int in2 = genes2.innovations[indexG2];
 
             if (in1 == in2) {
                 // Similar gene
-                indexG1++;
-                indexG2++;
-
                 similar++;
-                weightDiff += Math.abs(gene1.getWeight() - gene2.getWeight());
+                weightDiff += Math.abs(genes1.weights[indexG1] - genes2.weights[indexG2]);
 
+                indexG1++;
+                indexG2++;
             } else if (in1 > in2) {
                 //Disjoint gene of 2
                 indexG2++;
@@ -244,44 +453,48 @@ public class Genome {
             }
         }
 
-        excess = g1.getConnections().size() - indexG1;
+        excess = genes1.connectionCount - indexG1;
 
         if (weightDiff > 0) {
            weightDiff = weightDiff / similar;
         }
 
-        double N = Math.max(g1.getConnections().size(), g2.getConnections().size());
+        double N = Math.max(genes1.connectionCount, genes2.connectionCount);
         if (N<20) {
             N = 1;
         }
 
-        return ((Neat.C1*excess) / N) + ((Neat.C2*disjoint) / N) + (Neat.C3*weightDiff);
+        NeatConfig config = neat.getConfig();
+        return ((config.c1()*excess) / N) + ((config.c2()*disjoint) / N) + (config.c3()*weightDiff);
     }
 
-    public static Genome crossover(Genome g1, Genome g2) {
-        Genome genome = g1.getNeat().emptyGenome();
+    /**
+     * Crosses two genomes as a linear merge of their sorted genes.
+     * The child inherits every gene of the first parent, taking the weight and state of a matching gene
+     * from either parent at random, and the activation functions of the first parent. The child shares the genes of
+     * the first parent until one of them changes, and only copies the weights and states if the other parent gives
+     * it different ones.
+     * @param g1 The fittest parent.
+     * @param g2 The other parent.
+     * @param random The generator choosing the parent of each matching gene.
+     * @return The child genome.
+     */
+    public static Genome crossover(Genome g1, Genome g2, RandomGenerator random) {
+        GeneArrays genes1 = g1.genes;
+        GeneArrays genes2 = g2.genes;
+        GeneArrays child = genes1.copy();
 
         int indexG1 = 0;
         int indexG2 = 0;
 
-        // Convert TreeMap values to ArrayLists for indexed access
-        List<ConnectionGene> g1Connections = new ArrayList<>(g1.getConnections().values());
-        List<ConnectionGene> g2Connections = new ArrayList<>(g2.getConnections().values());
-
-        while (indexG1 < g1.getConnections().size() && indexG2 < g2.getConnections().size()) {
-            ConnectionGene gene1 = g1Connections.get(indexG1);
-            ConnectionGene gene2 = g2Connections.get(indexG2);
-
-            int in1 = gene1.getInnovationNumber();
-            int in2 = gene2.getInnovationNumber();
+        while (indexG1 < genes1.connectionCount && indexG2 < genes2.connectionCount) {
+            int in1 = genes1.innovations[indexG1];
+            int in2 = genes2.innovations[indexG2];
 
             if (in1 == in2) {
                 // Similar gene
-
-                if (Math.random() > 0.5) {
-                    genome.getConnections().put(Neat.getConnection(gene1).getInnovationNumber(), Neat.getConnection(gene1));
-                } else {
-                    genome.getConnections().put(Neat.getConnection(gene2).getInnovationNumber(), Neat.getConnection(gene2));
+                if (random.nextDouble() <= 0.5) {
+                    inheritValues(child, indexG1, genes2, indexG2);
                 }
 
                 indexG1++;
@@ -291,60 +504,300 @@ public class Genome {
                 indexG2++;
             } else {
                 //Disjoint gene of 1
-                genome.getConnections().put(Neat.getConnection(gene1).getInnovationNumber(), Neat.getConnection(gene1));
-
                 indexG1++;
             }
         }
 
-        while (indexG1 < g1.getConnections().size()) {
+        Neat neat = g1.getNeat();
+        child.inheritNodes(neat.getInputSize() + neat.getOutputSize() + 1, genes1);
 
-            ConnectionGene gene1 = g1Connections.get(indexG1);
-            genome.getConnections().put(Neat.getConnection(gene1).getInnovationNumber(), Neat.getConnection(gene1));
+        return new Genome(neat, child);
+    }
+
+    /**
+     * Gives a connection of the child the weight and state of the same connection in the other parent, writing them
+     * only if they differ, so that the child keeps sharing the genes of the first parent when they are the same.
+     */
+    private static void inheritValues(GeneArrays child, int index, GeneArrays parent, int parentIndex) {
+        if (Double.compare(child.weights[index], parent.weights[parentIndex]) != 0) {
+            child.setWeight(index, parent.weights[parentIndex]);
+        }
+        if (child.enabled[index] != parent.enabled[parentIndex]) {
+            child.setEnabled(index, parent.enabled[parentIndex]);
+        }
+    }
 
-            indexG1++;
+    /**
+     * Adds a node to this genome.
+     * @param node The node to add.
+     */
+    public void addNode(NodeGene node) {
+        genes.addNode(node.getInnovationNumber());
+        structureChanged();
+    }
 
+    /**
+     * Adds a connection to this genome, for instance when reading a saved genome.
+     * The nodes of the connection are not added.
+     * @param innovation The innovation number of the connection.
+     * @param fromId The id of the source node.
+     * @param toId The id of the destination node.
+     * @param weight The weight of the connection.
+     * @param enabled Whether the connection is enabled.
+     */
+    public void addConnection(int innovation, int fromId, int toId, double weight, boolean enabled) {
+        if (genes.indexOfConnection(innovation) >= 0) {
+            throw new IllegalArgumentException("The genome already has connection " + innovation);
         }
+        genes.insertConnection(innovation, fromId, toId, weight, enabled);
+        structureChanged();
+    }
+
+    private void structureChanged() {
+        topologicalOrder = null;
+        network = null;
+        revision = REVISIONS.incrementAndGet();
+    }
 
-        for (ConnectionGene c : genome.getConnections().values()) {
-             genome.getNodes().put(c.getFrom().getInnovationNumber(), c.getFrom());
-             genome.getNodes().put(c.getTo().getInnovationNumber(), c.getTo());
+    private void weightChanged(int index) {
+        if (network != null) {
+            network.setWeight(index, genes.weights[index]);
         }
+        revision = REVISIONS.incrementAndGet();
+    }
+
+    private void activationChanged(int index) {
+        if (network != null) {
+            network.setActivation(index, Activation.of(genes.activations[index]));
+        }
+    }
 
-        return genome;
+    /**
+     * Returns a number identifying the current innovation numbers and weights of this genome.
+     * It is different for every genome and changes whenever a mutation alters the distance to other genomes.
+     * @return The revision of the genome.
+     */
+    public int getRevision() {
+        return revision;
     }
 
     public Neat getNeat() {
         return neat;
     }
 
-    private ConnectionGene getRandomConnection() {
-        if (connections.isEmpty()) return null;
+    private int getRandomConnection(RandomGenerator random) {
+        if (genes.connectionCount == 0) return -1;
 
-        List<Map.Entry<Integer, ConnectionGene>> entryList = new ArrayList<>(connections.entrySet());
+        return random.nextInt(genes.connectionCount);
+    }
+
+    private NodeGene getRandomNode(RandomGenerator random) {
+        return registry.getNode(genes.nodes[random.nextInt(genes.nodeCount)]);
+    }
 
-        Random random = new Random();
-        int randomIndex = random.nextInt(entryList.size());
+    public int getConnectionCount() {
+        return genes.connectionCount;
+    }
 
-        Map.Entry<Integer, ConnectionGene> randomEntry = entryList.get(randomIndex);
-        return randomEntry.getValue();
+    public int getInnovation(int index) {
+        return genes.innovations[index];
     }
 
-    private NodeGene getRandomNode() {
-        List<Map.Entry<Integer, NodeGene>> entryList = new ArrayList<>(nodes.entrySet());
+    public int getFromId(int index) {
+        return genes.from[index];
+    }
 
-        Random random = new Random();
-        int randomIndex = random.nextInt(entryList.size());
+    public int getToId(int index) {
+        return genes.to[index];
+    }
 
-        Map.Entry<Integer, NodeGene> randomEntry = entryList.get(randomIndex);
-        return randomEntry.getValue();
+    public double getWeight(int index) {
+        return genes.weights[index];
     }
 
+    public boolean isEnabled(int index) {
+        return genes.enabled[index];
+    }
+
+    /**
+     * Returns whether a connection is recurrent, that is whether its destination is not on the right of its source.
+     * A recurrent connection reads the activation of its source at the previous step of the network.
+     * @param index The index of the connection.
+     * @return True if the connection is recurrent.
+     */
+    public boolean isRecurrent(int index) {
+        return registry.getNode(genes.from[index]).getX() >= registry.getNode(genes.to[index]).getX();
+    }
+
+    public int getNodeCount() {
+        return genes.nodeCount;
+    }
+
+    public int getNodeId(int index) {
+        return genes.nodes[index];
+    }
+
+    /**
+     * Finds a node by id.
+     * @param id The id of the node.
+     * @return The index of the node, or a negative value if the genome does not have it.
+     */
+    public int indexOfNode(int id) {
+        return genes.indexOfNode(id);
+    }
+
+    public Activation getActivation(int index) {
+        return Activation.of(genes.activations[index]);
+    }
+
+    /**
+     * Changes the activation function of a node, for instance when reading a saved genome.
+     * @param id The id of the node, which must be part of this genome.
+     * @param activation The activation function.
+     */
+    public void setActivation(int id, Activation activation) {
+        int index = genes.indexOfNode(id);
+        if (index < 0) {
+            throw new IllegalArgumentException("The genome does not have node " + id);
+        }
+        genes.setActivation(index, (byte) activation.ordinal());
+        activationChanged(index);
+    }
+
+    /**
+     * Returns a read-only view of the nodes of this genome, sorted by id.
+     * @return The nodes by id.
+     */
     public Map<Integer, NodeGene> getNodes() {
-        return this.nodes;
+        return new NodeView();
     }
 
+    /**
+     * Returns a read-only view of the connections of this genome, sorted by innovation number.
+     * The connection genes are copies, so changing them does not change the genome.
+     * @return The connections by innovation number.
+     */
     public Map<Integer, ConnectionGene> getConnections() {
-        return this.connections;
+        return new ConnectionView();
+    }
+
+    private ConnectionGene getConnectionGene(int index) {
+        ConnectionGene connection = new ConnectionGene(registry.getNode(genes.from[index]), registry.getNode(genes.to[index]));
+        connection.setInnovationNumber(genes.innovations[index]);
+        connection.setWeight(genes.weights[index]);
+        connection.setEnabled(genes.enabled[index]);
+        return connection;
+    }
+
+    private final class NodeView extends AbstractMap<Integer, NodeGene> {
+
+        @Override
+        public NodeGene get(Object key) {
+            if (!(key instanceof Integer id) || genes.indexOfNode(id) < 0) return null;
+            return registry.getNode(id);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer id && genes.indexOfNode(id) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return genes.nodeCount;
+        }
+
+        @Override
+        public Set<Entry<Integer, NodeGene>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, NodeGene>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < genes.nodeCount;
+                        }
+
+                        @Override
+                        public Entry<Integer, NodeGene> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int id = genes.nodes[index++];
+                            return Map.entry(id, registry.getNode(id));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return genes.nodeCount;
+                }
+            };
+        }
+    }
+
+    private final class ConnectionView extends AbstractMap<Integer, ConnectionGene> {
+
+        @Override
+        public ConnectionGene get(Object key) {
+            if (!(key instanceof Integer innovation)) return null;
+            int index = genes.indexOfConnection(innovation);
+            return index < 0 ? null : getConnectionGene(index);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof Integer innovation && genes.indexOfConnection(innovation) >= 0;
+        }
+
+        @Override
+        public int size() {
+            return genes.connectionCount;
+        }
+
+        @Override
+        public Set<Entry<Integer, ConnectionGene>> entrySet() {
+            return new AbstractSet<>() {
+                @Override
+                public Iterator<Entry<Integer, ConnectionGene>> iterator() {
+                    return new Iterator<>() {
+                        private int index;
+
+                        @Override
+                        public boolean hasNext() {
+                            return index < genes.connectionCount;
+                        }
+
+                        @Override
+                        public Entry<Integer, ConnectionGene> next() {
+                            if (!hasNext()) throw new NoSuchElementException();
+                            int i = index++;
+                            return Map.entry(genes.innovations[i], getConnectionGene(i));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return genes.connectionCount;
+                }
+            };
+        }
+    }
+
+    /**
+     * The structural mutations drawn for a genome, with their registered innovations. An innovation or node id of 0
+     * means that the mutation was not drawn.
+     */
+    private static final class StructuralMutation {
+        int linkInnovation;
+        int linkFrom;
+        int linkTo;
+        double linkWeight;
+        int splitInnovation;
+        int middleId;
+        int fromMiddleInnovation;
+        int middleToInnovation;
     }
 }
@@ -12,4 +12,12 @@ public enum NodeType {
         this.value = value;
     }
 
+    /**
+     * @return True for the inputs and the bias node, whose values are given to the network instead of computed, and
+     * which therefore never receive connections.
+     */
+    public boolean isSensor() {
+        return this == INPUT || this == BIAS;
+    }
+
 }
@@ -0,0 +1,250 @@
+package model.island;
+
+import model.Individual;
+import model.InnovationRegistry;
+import model.Neat;
+import model.NeatConfig;
+import model.island.MigrantCodec.Migrant;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Evolves several populations, the islands, each on its own worker thread and its own pool.
+ * <p>
+ * The islands share one innovation registry, so that migrants can be compared and crossed with the genomes of any
+ * island. Every given number of generations, the islands wait for each other after being evaluated, and the best
+ * individuals of every island are copied over the worst individuals of the islands it sends to, as given by the
+ * topology. The islands only synchronize to migrate, so the throughput grows with the number of cores as long as
+ * there are at least as many cores as islands.
+ * <p>
+ * The model can also exchange migrants with models in other processes through a {@link MigrationLink}: at every
+ * migration it sends the best individuals of all its islands to the peers of the link, and spreads the migrants it
+ * received since the previous migration over its islands.
+ */
+public class IslandModel implements AutoCloseable {
+
+    private final InnovationRegistry registry = new InnovationRegistry();
+    private final List<Neat> islands = new ArrayList<>();
+    private final List<ForkJoinPool> pools = new ArrayList<>();
+    private final ExecutorService workers;
+    private final Topology topology;
+    private final int interval;
+    private final int migrants;
+    private MigrationLink link;
+    private int nextIsland;
+
+    /**
+     * @param inputSize The number of input nodes.
+     * @param outputSize The number of output nodes.
+     * @param islands The number of islands.
+     * @param individuals The size of the population of every island.
+     * @param config The hyperparameters of every island.
+     * @param topology The islands every island sends its migrants to.
+     * @param interval The number of generations between two migrations.
+     * @param migrants The number of individuals every island sends at every migration.
+     * @param seed The seed from which the seeds of the islands are drawn.
+     */
+    public IslandModel(int inputSize, int outputSize, int islands, int individuals, NeatConfig config,
+                       Topology topology, int interval, int migrants, long seed) {
+        if (islands <= 0 || interval <= 0 || migrants < 0 || migrants > individuals / 2) {
+            throw new IllegalArgumentException("Invalid island model");
+        }
+        this.topology = topology;
+        this.interval = interval;
+        this.migrants = migrants;
+
+        int parallelism = Math.max(1, Runtime.getRuntime().availableProcessors() / islands);
+        SplittableRandom seeds = new SplittableRandom(seed);
+        for (int i = 0; i < islands; i++) {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            pools.add(pool);
+            this.islands.add(new Neat(inputSize, outputSize, individuals, config,
+                    new Neat.Options().pool(pool).registry(registry).seed(seeds.nextLong())));
+        }
+        workers = Executors.newFixedThreadPool(islands);
+    }
+
+    /**
+     * Exchanges migrants with other processes from now on.
+     * @param link The link to the other processes, or null to stop exchanging migrants.
+     */
+    public void setLink(MigrationLink link) {
+        this.link = link;
+    }
+
+    /**
+     * Evolves every island for a number of generations, then evaluates them once more so that their scores match
+     * their final genomes. If an island or a migration fails, the other islands stop at their next generation or
+     * migration, and the failure is thrown once they all stopped.
+     * @param fitness The fitness function, called concurrently by all the islands.
+     * @param generations The number of generations.
+     */
+    public void run(ToDoubleFunction<Individual> fitness, int generations) {
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Migrates when the last island arrives, and is terminated to release the islands as soon as one fails
+        Phaser migration = new Phaser(islands.size()) {
+            @Override
+            protected boolean onAdvance(int phase, int registeredParties) {
+                try {
+                    migrate();
+                    return false;
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                    return true;
+                }
+            }
+        };
+
+        List<Future<?>> futures = new ArrayList<>();
+        for (Neat island : islands) {
+            futures.add(workers.submit(() -> {
+                try {
+                    for (int g = 0; g < generations && !migration.isTerminated(); g++) {
+                        island.evaluatePopulation(fitness);
+                        if ((g + 1) % interval == 0 && migration.arriveAndAwaitAdvance() < 0) return;
+                        island.evolvePopulation();
+                    }
+                    if (!migration.isTerminated()) {
+                        island.evaluatePopulation(fitness);
+                    }
+                } catch (RuntimeException | Error e) {
+                    failure.compareAndSet(null, e);
+                    migration.forceTermination();
+                }
+            }));
+        }
+
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                migration.forceTermination();
+                throw new IllegalStateException("Interrupted while the islands evolve", e);
+            } catch (ExecutionException e) {
+                failure.compareAndSet(null, e.getCause());
+            }
+        }
+        Throwable cause = failure.get();
+        if (cause != null) {
+            throw cause instanceof RuntimeException r ? r : new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Copies the best individuals of every island over the worst individuals of its targets.
+     * Runs on the last island arriving at the migration, while the others wait.
+     */
+    private void migrate() {
+        List<List<Individual>> ranked = new ArrayList<>();
+        List<List<Migrant>> incoming = new ArrayList<>();
+        for (Neat island : islands) {
+            List<Individual> individuals = new ArrayList<>(island.getIndividuals());
+            individuals.sort(Comparator.comparingDouble(Individual::getScore).reversed());
+            ranked.add(individuals);
+            incoming.add(new ArrayList<>());
+        }
+
+        for (int i = 0; i < islands.size(); i++) {
+            for (int target : topology.targets(i, islands.size())) {
+                for (Individual individual : ranked.get(i).subList(0, migrants)) {
+                    incoming.get(target).add(new Migrant(individual.getGenome().copy(islands.get(target)), individual.getScore()));
+                }
+            }
+        }
+        if (link != null) {
+            exchange(ranked, incoming);
+        }
+
+        for (int i = 0; i < islands.size(); i++) {
+            List<Individual> worst = ranked.get(i);
+            List<Migrant> arrivals = incoming.get(i);
+            arrivals.sort(Comparator.comparingDouble(Migrant::score).reversed());
+            // Never replace the individuals that just emigrated, which are still the best of the island
+            int count = Math.min(arrivals.size(), worst.size() - migrants);
+            for (int j = 0; j < count; j++) {
+                Individual individual = worst.get(worst.size() - 1 - j);
+                individual.setGenome(arrivals.get(j).genome());
+                individual.setScore(arrivals.get(j).score());
+            }
+        }
+    }
+
+    private void exchange(List<List<Individual>> ranked, List<List<Migrant>> incoming) {
+        List<Individual> best = new ArrayList<>();
+        for (List<Individual> individuals : ranked) {
+            best.addAll(individuals.subList(0, migrants));
+        }
+        best.sort(Comparator.comparingDouble(Individual::getScore).reversed());
+
+        try {
+            ByteArrayOutputStream frame = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(frame);
+            out.writeInt(migrants);
+            for (Individual individual : best.subList(0, migrants)) {
+                MigrantCodec.write(individual.getGenome(), individual.getScore(), out);
+            }
+            link.send(frame.toByteArray());
+
+            for (byte[] received : link.drain()) {
+                DataInputStream in = new DataInputStream(new ByteArrayInputStream(received));
+                for (int count = in.readInt(); count > 0; count--) {
+                    int island = nextIsland++ % islands.size();
+                    incoming.get(island).add(MigrantCodec.read(islands.get(island), in));
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return The individual with the highest score over all the islands.
+     */
+    public Individual getBest() {
+        Individual best = null;
+        for (Neat island : islands) {
+            for (Individual individual : island.getIndividuals()) {
+                if (best == null || individual.getScore() > best.getScore()) best = individual;
+            }
+        }
+        return best;
+    }
+
+    public List<Neat> getIslands() {
+        return Collections.unmodifiableList(islands);
+    }
+
+    public InnovationRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Stops the worker threads and the pools of the islands. The link, if any, is not closed.
+     */
+    @Override
+    public void close() {
+        workers.shutdown();
+        for (ForkJoinPool pool : pools) {
+            pool.shutdown();
+        }
+    }
+}
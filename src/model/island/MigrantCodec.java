@@ -0,0 +1,162 @@
+package model.island;
+
+import model.InnovationRegistry;
+import model.Neat;
+import model.genes.Activation;
+import model.genes.Genome;
+import model.genes.NodeGene;
+import model.genes.NodeType;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Encodes genomes so that they can migrate to a population with another innovation registry, in another process.
+ * <p>
+ * Ids and innovation numbers mean nothing outside of their registry, so a genome is encoded by the structure it
+ * describes. Input and output nodes keep their ids, which are the same in every run with the same sizes. A hidden
+ * node created to split a connection is named by the nodes at both ends of that connection, recursively, and is
+ * mapped to the node splitting the same connection as many times in the receiving registry. Connections are named
+ * by their two nodes. A genome crossed or compared with the migrant therefore aligns with it as if they had evolved
+ * in the same run. Hidden nodes that are not the split of a connection are recreated as new nodes. Every node
+ * keeps its activation function.
+ */
+public final class MigrantCodec {
+
+    private static final byte FIXED = 0;
+    private static final byte SPLIT = 1;
+    private static final byte UNIQUE = 2;
+
+    private MigrantCodec() {
+    }
+
+    /**
+     * Writes a genome with its score.
+     * @param genome The genome.
+     * @param score The score of the genome.
+     * @param out The output.
+     * @throws IOException If the output cannot be written.
+     */
+    public static void write(Genome genome, double score, DataOutput out) throws IOException {
+        InnovationRegistry registry = genome.getNeat().getRegistry();
+
+        // The nodes of the genome and the ends of the connections they split, which have lower ids
+        BitSet named = new BitSet();
+        for (int i = 0; i < genome.getNodeCount(); i++) {
+            named.set(genome.getNodeId(i));
+        }
+        for (int id = named.length() - 1; id > 0; id = named.previousSetBit(id - 1)) {
+            long key = registry.getSplitKey(id);
+            if (key != 0) {
+                named.set((int) (key >>> 32));
+                named.set((int) key);
+            }
+        }
+
+        out.writeDouble(score);
+        out.writeInt(named.cardinality());
+        for (int id = named.nextSetBit(0); id >= 0; id = named.nextSetBit(id + 1)) {
+            NodeGene node = registry.getNode(id);
+            long key = registry.getSplitKey(id);
+            out.writeInt(id);
+            if (node.getType() != NodeType.HIDDEN) {
+                out.writeByte(FIXED);
+            } else if (key != 0) {
+                out.writeByte(SPLIT);
+                out.writeInt((int) (key >>> 32));
+                out.writeInt((int) key);
+                out.writeInt(registry.getSplitOrdinal(id));
+                out.writeDouble(node.getY());
+            } else {
+                out.writeByte(UNIQUE);
+                out.writeDouble(node.getX());
+                out.writeDouble(node.getY());
+            }
+        }
+
+        out.writeInt(genome.getNodeCount());
+        for (int i = 0; i < genome.getNodeCount(); i++) {
+            out.writeInt(genome.getNodeId(i));
+            out.writeByte(genome.getActivation(i).ordinal());
+        }
+        out.writeInt(genome.getConnectionCount());
+        for (int i = 0; i < genome.getConnectionCount(); i++) {
+            out.writeInt(genome.getFromId(i));
+            out.writeInt(genome.getToId(i));
+            out.writeDouble(genome.getWeight(i));
+            out.writeBoolean(genome.isEnabled(i));
+        }
+    }
+
+    /**
+     * Reads a genome into a population, registering its structure in the registry of the population.
+     * @param neat The population receiving the genome.
+     * @param in The input.
+     * @return The migrant, with the genome and the score it was written with.
+     * @throws IOException If the input cannot be read or does not fit the population.
+     */
+    public static Migrant read(Neat neat, DataInput in) throws IOException {
+        InnovationRegistry registry = neat.getRegistry();
+        double score = in.readDouble();
+
+        int count = in.readInt();
+        Map<Integer, NodeGene> nodes = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int id = in.readInt();
+            byte kind = in.readByte();
+            NodeGene node;
+            if (kind == FIXED) {
+                if (id > registry.getNodeCount() || registry.getNode(id).getType() == NodeType.HIDDEN) {
+                    throw new IOException("Node " + id + " is not an input, output or bias node of the population");
+                }
+                node = registry.getNode(id);
+            } else if (kind == SPLIT) {
+                NodeGene from = node(nodes, in.readInt());
+                NodeGene to = node(nodes, in.readInt());
+                int ordinal = in.readInt();
+                node = registry.getSplitNode(registry.getInnovation(from, to), ordinal, from, to, in.readDouble());
+            } else {
+                node = registry.newNode(in.readDouble(), in.readDouble());
+            }
+            nodes.put(id, node);
+        }
+
+        Genome genome = new Genome(neat);
+        int nodeCount = in.readInt();
+        for (int i = 0; i < nodeCount; i++) {
+            NodeGene node = node(nodes, in.readInt());
+            genome.addNode(node);
+            try {
+                genome.setActivation(node.getInnovationNumber(), Activation.of(in.readByte()));
+            } catch (IllegalArgumentException e) {
+                throw new IOException(e.getMessage(), e);
+            }
+        }
+        int connectionCount = in.readInt();
+        for (int i = 0; i < connectionCount; i++) {
+            NodeGene from = node(nodes, in.readInt());
+            NodeGene to = node(nodes, in.readInt());
+            genome.addConnection(registry.getInnovation(from, to), from.getInnovationNumber(), to.getInnovationNumber(),
+                    in.readDouble(), in.readBoolean());
+        }
+        return new Migrant(genome, score);
+    }
+
+    private static NodeGene node(Map<Integer, NodeGene> nodes, int id) throws IOException {
+        NodeGene node = nodes.get(id);
+        if (node == null) throw new IOException("Unknown node " + id);
+        return node;
+    }
+
+    /**
+     * A genome received from another population.
+     * @param genome The genome, which belongs to the receiving population.
+     * @param score The score of the genome in the sending population.
+     */
+    public record Migrant(Genome genome, double score) {
+    }
+}
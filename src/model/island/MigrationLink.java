@@ -0,0 +1,159 @@
+package model.island;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Carries migrants between island models running in separate processes over loopback sockets.
+ * <p>
+ * Every link listens on a local port and sends its migrants to the ports of its peers, so the topology between
+ * processes is given by the peers of each link, for instance the next process for a ring. Migrants are exchanged
+ * asynchronously: sending never waits for the peer, and the migrants received since the last migration join at the
+ * next one. A peer that cannot be reached misses the migrants sent to it.
+ */
+public class MigrationLink implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final List<Integer> peers = new ArrayList<>();
+    private final Map<Integer, DataOutputStream> connections = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<byte[]> received = new ConcurrentLinkedQueue<>();
+    private final List<Socket> accepted = new ArrayList<>();
+    private final ExecutorService sender = Executors.newSingleThreadExecutor(daemon("neat-migration-sender"));
+    private final ExecutorService receivers = Executors.newCachedThreadPool(daemon("neat-migration-receiver"));
+    private final AtomicInteger lost = new AtomicInteger();
+
+    /**
+     * Listens for migrants on a loopback port.
+     * @param port The port, or 0 for any free port.
+     * @throws IOException If the port cannot be bound.
+     */
+    public MigrationLink(int port) throws IOException {
+        server = new ServerSocket(port, 16, InetAddress.getLoopbackAddress());
+        receivers.execute(this::accept);
+    }
+
+    private static ThreadFactory daemon(String name) {
+        return task -> {
+            Thread thread = new Thread(task, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * Sends the migrants of this process to the link listening on the given loopback port.
+     * @param port The port of the peer.
+     */
+    public synchronized void addPeer(int port) {
+        peers.add(port);
+    }
+
+    /**
+     * Sends a frame of migrants to every peer without waiting.
+     * @param frame The encoded migrants.
+     */
+    void send(byte[] frame) {
+        List<Integer> targets;
+        synchronized (this) {
+            targets = List.copyOf(peers);
+        }
+        sender.execute(() -> {
+            for (int port : targets) {
+                try {
+                    DataOutputStream out = connections.get(port);
+                    if (out == null) {
+                        Socket socket = new Socket();
+                        socket.connect(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1000);
+                        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+                        connections.put(port, out);
+                    }
+                    out.writeInt(frame.length);
+                    out.write(frame);
+                    out.flush();
+                } catch (IOException e) {
+                    connections.remove(port);
+                    lost.incrementAndGet();
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The frames received since the last call.
+     */
+    List<byte[]> drain() {
+        List<byte[]> frames = new ArrayList<>();
+        for (byte[] frame; (frame = received.poll()) != null; ) {
+            frames.add(frame);
+        }
+        return frames;
+    }
+
+    /**
+     * @return The number of frames that could not be sent to a peer.
+     */
+    public int getLost() {
+        return lost.get();
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                synchronized (accepted) {
+                    accepted.add(socket);
+                }
+                receivers.execute(() -> receive(socket));
+            } catch (IOException e) {
+                // Closed by close(), or a connection that failed before being accepted
+            }
+        }
+    }
+
+    private void receive(Socket socket) {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()))) {
+            while (true) {
+                byte[] frame = new byte[in.readInt()];
+                in.readFully(frame);
+                received.add(frame);
+            }
+        } catch (IOException e) {
+            // The peer closed the connection
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        server.close();
+        sender.shutdown();
+        receivers.shutdownNow();
+        for (DataOutputStream out : connections.values()) {
+            out.close();
+        }
+        synchronized (accepted) {
+            for (Socket socket : accepted) {
+                socket.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package model.island;
+
+/**
+ * The islands each island sends its migrants to.
+ */
+public enum Topology {
+
+    /**
+     * Every island sends its migrants to the next one, and the last one to the first.
+     */
+    RING,
+
+    /**
+     * Every island sends its migrants to all the others.
+     */
+    FULLY_CONNECTED;
+
+    /**
+     * @param island The index of the sending island.
+     * @param islands The number of islands.
+     * @return The indices of the receiving islands.
+     */
+    public int[] targets(int island, int islands) {
+        if (islands < 2) return new int[0];
+        if (this == RING) return new int[]{(island + 1) % islands};
+
+        int[] targets = new int[islands - 1];
+        for (int i = 0, t = 0; i < islands; i++) {
+            if (i != island) targets[t++] = i;
+        }
+        return targets;
+    }
+}
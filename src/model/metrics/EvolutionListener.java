@@ -0,0 +1,32 @@
+package model.metrics;
+
+/**
+ * Receives the metrics of a NEAT run. All the methods do nothing by default.
+ * The methods are called from the thread driving the evolution, so a listener does not need to be thread-safe
+ * unless it is shared between several runs.
+ */
+public interface EvolutionListener {
+
+    /**
+     * Called at the end of each phase.
+     * @param generation The number of the generation.
+     * @param phase The phase that ended.
+     * @param nanos The duration of the phase in nanoseconds.
+     */
+    default void onPhase(int generation, Phase phase, long nanos) {
+    }
+
+    /**
+     * Called for every species after speciation.
+     * @param stats The statistics of the species.
+     */
+    default void onSpecies(SpeciesStats stats) {
+    }
+
+    /**
+     * Called once a generation has been evolved.
+     * @param stats The statistics of the generation.
+     */
+    default void onGeneration(GenerationStats stats) {
+    }
+}
@@ -0,0 +1,26 @@
+package model.metrics;
+
+/**
+ * The statistics of a generation, published once the population has been evolved.
+ * Genome sizes count connections and are measured on the new population, while the scores and the species
+ * are the ones the generation was evolved from.
+ *
+ * @param generation The number of the generation, starting at 0.
+ * @param speciesCount The number of species after speciation.
+ * @param compatibilityThreshold The compatibility threshold the species were formed with.
+ * @param meanGenomeSize The mean number of connections per genome.
+ * @param maxGenomeSize The largest number of connections of a genome.
+ * @param bestScore The best score of the population.
+ * @param innovationCount The number of connection innovations registered so far.
+ * @param nodeCount The number of nodes registered so far.
+ * @param distanceComputations The number of genome distances computed during speciation, excluding cache hits.
+ * @param phaseNanos The duration of each phase in nanoseconds, indexed by {@link Phase#ordinal()}.
+ */
+public record GenerationStats(int generation, int speciesCount, double compatibilityThreshold, double meanGenomeSize, int maxGenomeSize,
+                              double bestScore, int innovationCount, int nodeCount, long distanceComputations,
+                              long[] phaseNanos) {
+
+    public long getPhaseNanos(Phase phase) {
+        return phaseNanos[phase.ordinal()];
+    }
+}
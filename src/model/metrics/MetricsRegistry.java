@@ -0,0 +1,73 @@
+package model.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * An in-process registry keeping the latest value of every metric and the total time spent in each phase.
+ * It can be read from any thread while the evolution runs.
+ */
+public class MetricsRegistry implements EvolutionListener {
+
+    private final Map<String, Double> gauges = new ConcurrentHashMap<>();
+    private final long[] totalPhaseNanos = new long[Phase.values().length];
+    private volatile GenerationStats lastGeneration;
+
+    @Override
+    public void onPhase(int generation, Phase phase, long nanos) {
+        synchronized (totalPhaseNanos) {
+            totalPhaseNanos[phase.ordinal()] += nanos;
+        }
+        gauges.put("phase." + phase.name().toLowerCase() + ".nanos", (double) nanos);
+    }
+
+    @Override
+    public void onSpecies(SpeciesStats stats) {
+        String prefix = "species." + stats.id() + ".";
+        gauges.put(prefix + "size", (double) stats.size());
+        gauges.put(prefix + "score", stats.score());
+        gauges.put(prefix + "best_score", stats.bestScore());
+    }
+
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        lastGeneration = stats;
+        gauges.put("generation", (double) stats.generation());
+        gauges.put("species.count", (double) stats.speciesCount());
+        gauges.put("species.threshold", stats.compatibilityThreshold());
+        gauges.put("genome.size.mean", stats.meanGenomeSize());
+        gauges.put("genome.size.max", (double) stats.maxGenomeSize());
+        gauges.put("score.best", stats.bestScore());
+        gauges.put("innovations", (double) stats.innovationCount());
+        gauges.put("nodes", (double) stats.nodeCount());
+        gauges.put("distance.computations", (double) stats.distanceComputations());
+    }
+
+    /**
+     * Returns the latest value of a metric.
+     * @param name The name of the metric, for instance "species.count".
+     * @return The value, or NaN if the metric was never reported.
+     */
+    public double get(String name) {
+        return gauges.getOrDefault(name, Double.NaN);
+    }
+
+    public long getTotalNanos(Phase phase) {
+        synchronized (totalPhaseNanos) {
+            return totalPhaseNanos[phase.ordinal()];
+        }
+    }
+
+    public GenerationStats getLastGeneration() {
+        return lastGeneration;
+    }
+
+    /**
+     * Returns a copy of all the metrics, sorted by name.
+     * @return The metrics by name.
+     */
+    public Map<String, Double> snapshot() {
+        return new TreeMap<>(gauges);
+    }
+}
@@ -0,0 +1,95 @@
+package model.metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes the metrics of a run as they are published, either as CSV with one row per generation,
+ * or as JSON lines with one object per generation and per species.
+ * The writer is flushed after every generation and is not closed by the sink.
+ */
+public class MetricsSink implements EvolutionListener {
+
+    public enum Format {
+        CSV,
+        JSON_LINES
+    }
+
+    private final Writer writer;
+    private final Format format;
+    private boolean headerWritten;
+
+    public MetricsSink(Writer writer, Format format) {
+        this.writer = writer;
+        this.format = format;
+    }
+
+    @Override
+    public void onSpecies(SpeciesStats stats) {
+        if (format != Format.JSON_LINES) return;
+
+        write(String.format(Locale.ROOT,
+                "{\"type\":\"species\",\"generation\":%d,\"id\":%d,\"size\":%d,\"score\":%s,\"best_score\":%s,\"champion_size\":%d}%n",
+                stats.generation(), stats.id(), stats.size(), number(stats.score()), number(stats.bestScore()),
+                stats.championSize()));
+    }
+
+    @Override
+    public void onGeneration(GenerationStats stats) {
+        StringBuilder line = new StringBuilder();
+        if (format == Format.CSV) {
+            if (!headerWritten) {
+                line.append("generation,species,compatibility_threshold,mean_genome_size,max_genome_size,best_score,innovations,nodes,distance_computations");
+                for (Phase phase : Phase.values()) {
+                    line.append(',').append(phase.name().toLowerCase()).append("_nanos");
+                }
+                line.append(System.lineSeparator());
+                headerWritten = true;
+            }
+            line.append(String.format(Locale.ROOT, "%d,%d,%s,%s,%d,%s,%d,%d,%d",
+                    stats.generation(), stats.speciesCount(), number(stats.compatibilityThreshold()),
+                    number(stats.meanGenomeSize()), stats.maxGenomeSize(),
+                    number(stats.bestScore()), stats.innovationCount(), stats.nodeCount(), stats.distanceComputations()));
+            for (Phase phase : Phase.values()) {
+                line.append(',').append(stats.getPhaseNanos(phase));
+            }
+        } else {
+            line.append(String.format(Locale.ROOT,
+                    "{\"type\":\"generation\",\"generation\":%d,\"species\":%d,\"compatibility_threshold\":%s,\"mean_genome_size\":%s,\"max_genome_size\":%d,"
+                            + "\"best_score\":%s,\"innovations\":%d,\"nodes\":%d,\"distance_computations\":%d",
+                    stats.generation(), stats.speciesCount(), number(stats.compatibilityThreshold()),
+                    number(stats.meanGenomeSize()), stats.maxGenomeSize(),
+                    number(stats.bestScore()), stats.innovationCount(), stats.nodeCount(), stats.distanceComputations()));
+            for (Phase phase : Phase.values()) {
+                line.append(",\"").append(phase.name().toLowerCase()).append("_nanos\":").append(stats.getPhaseNanos(phase));
+            }
+            line.append('}');
+        }
+        line.append(System.lineSeparator());
+
+        write(line.toString());
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void write(String text) {
+        try {
+            writer.write(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Formats a number, leaving out infinities and NaN which JSON cannot represent.
+     */
+    private String number(double value) {
+        if (Double.isFinite(value)) return Double.toString(value);
+        return format == Format.JSON_LINES ? "null" : "";
+    }
+}
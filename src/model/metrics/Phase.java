@@ -0,0 +1,13 @@
+package model.metrics;
+
+/**
+ * The phases of a generation, in the order in which they run.
+ */
+public enum Phase {
+    EVALUATION,
+    SPECIATION,
+    ELIMINATION,
+    EXTINCTION,
+    REPRODUCTION,
+    MUTATION
+}
@@ -0,0 +1,14 @@
+package model.metrics;
+
+/**
+ * The statistics of a species right after speciation.
+ *
+ * @param generation The number of the generation.
+ * @param id The id of the species, stable across generations.
+ * @param size The number of members.
+ * @param score The mean score of the members.
+ * @param bestScore The best score of a member.
+ * @param championSize The number of connections of the champion.
+ */
+public record SpeciesStats(int generation, int id, int size, double score, double bestScore, int championSize) {
+}
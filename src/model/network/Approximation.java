@@ -0,0 +1,182 @@
+package model.network;
+
+import model.genes.Activation;
+
+/**
+ * How a compiled network computes the activation functions of its nodes, chosen for a whole run.
+ * <p>
+ * The rectifier and the identity are exact in every mode. For the other functions, {@link #maxError(Activation)}
+ * bounds the absolute difference between {@link #apply(Activation, double)} and {@link Activation#apply(double)} over
+ * all finite inputs.
+ */
+public enum Approximation {
+
+    /**
+     * {@link Math#exp} and {@link Math#tanh}.
+     */
+    EXACT,
+    /**
+     * Linear interpolation in a table of the logistic function over [-16, 16] and in a table of exp(-s) over [0, 32],
+     * with 4096 intervals each and constant values outside. The sigmoid and tanh are derived from the logistic
+     * function and the gaussian from exp(-s).
+     */
+    TABLE,
+    /**
+     * exp(-s) computed as the 16th power of the [3/3] Pade approximant of exp(-s / 16), from which the sigmoid,
+     * tanh and gaussian are derived. There is no table and no call to {@link Math#exp}.
+     */
+    RATIONAL;
+
+    private static final int ACTIVATIONS = 5;
+    private static final int SIGMOID = 0;
+    private static final int TANH = 1;
+    private static final int RELU = 2;
+    private static final int IDENTITY = 3;
+    private static final int GAUSSIAN = 4;
+    private static final int TABLE_CODES = ACTIVATIONS;
+    private static final int RATIONAL_CODES = 2 * ACTIVATIONS;
+
+    private static final int INTERVALS = 4096;
+    private static final double LOGISTIC_RANGE = 16;
+    private static final double LOGISTIC_SCALE = INTERVALS / (2 * LOGISTIC_RANGE);
+    private static final double EXP_RANGE = 32;
+    private static final double EXP_SCALE = INTERVALS / EXP_RANGE;
+    private static final double[] LOGISTIC = new double[INTERVALS + 1];
+    private static final double[] EXP = new double[INTERVALS + 1];
+
+    static {
+        if (Activation.values().length != ACTIVATIONS || Activation.SIGMOID.ordinal() != SIGMOID
+                || Activation.TANH.ordinal() != TANH || Activation.RELU.ordinal() != RELU
+                || Activation.IDENTITY.ordinal() != IDENTITY || Activation.GAUSSIAN.ordinal() != GAUSSIAN) {
+            throw new AssertionError("The codes do not match the activations");
+        }
+        for (int i = 0; i <= INTERVALS; i++) {
+            LOGISTIC[i] = 1d / (1 + Math.exp(-(i / LOGISTIC_SCALE - LOGISTIC_RANGE)));
+            EXP[i] = Math.exp(-i / EXP_SCALE);
+        }
+    }
+
+    /**
+     * Computes an activation function in this mode.
+     * @param activation The function.
+     * @param x The weighted sum of the inputs of a node.
+     * @return The activation of the node.
+     */
+    public double apply(Activation activation, double x) {
+        return evaluate(code(activation), x);
+    }
+
+    /**
+     * Returns the largest absolute error of an activation function in this mode, as checked over a dense sampling of
+     * the inputs with a margin for rounding.
+     * @param activation The function.
+     * @return The bound of the error, 0 if the function is exact.
+     */
+    public double maxError(Activation activation) {
+        if (this == EXACT) return 0;
+        return switch (activation) {
+            case RELU, IDENTITY -> 0;
+            case SIGMOID -> this == TABLE ? 1e-6 : 1e-9;
+            case TANH -> this == TABLE ? 2e-6 : 2e-9;
+            case GAUSSIAN -> this == TABLE ? 8e-6 : 1e-9;
+        };
+    }
+
+    /**
+     * @return The code of an activation in this mode, given to {@link #evaluate(int, double)}.
+     */
+    byte code(Activation activation) {
+        int function = activation.ordinal();
+        if (function == RELU || function == IDENTITY) return (byte) function;
+        return (byte) (ordinal() * ACTIVATIONS + function);
+    }
+
+    /**
+     * Computes the activation of a code, as one switch that the JIT compiles to a jump table.
+     */
+    static double evaluate(int code, double x) {
+        switch (code) {
+            case SIGMOID:
+                return 1d / (1 + Math.exp(-4.9 * x));
+            case TANH:
+                return Math.tanh(x);
+            case RELU:
+                return Math.max(0, x);
+            case IDENTITY:
+                return x;
+            case GAUSSIAN:
+                return Math.exp(-x * x);
+            case TABLE_CODES + SIGMOID:
+                return logistic(4.9 * x);
+            case TABLE_CODES + TANH:
+                return 2 * logistic(2 * x) - 1;
+            case TABLE_CODES + GAUSSIAN:
+                return expTable(x * x);
+            case RATIONAL_CODES + SIGMOID: {
+                double t = 4.9 * x;
+                double e = expRational(Math.abs(t));
+                return t >= 0 ? 1 / (1 + e) : e / (1 + e);
+            }
+            case RATIONAL_CODES + TANH: {
+                double e = expRational(2 * Math.abs(x));
+                double r = (1 - e) / (1 + e);
+                return x >= 0 ? r : -r;
+            }
+            case RATIONAL_CODES + GAUSSIAN:
+                return expRational(x * x);
+            default:
+                throw new IllegalArgumentException("Unknown activation code " + code);
+        }
+    }
+
+    /**
+     * Computes the activation of a code in place over a range of values.
+     */
+    static void evaluate(int code, double[] values, int from, int to) {
+        switch (code) {
+            case RELU:
+                for (int i = from; i < to; i++) {
+                    values[i] = Math.max(0, values[i]);
+                }
+                return;
+            case IDENTITY:
+                return;
+            default:
+                for (int i = from; i < to; i++) {
+                    values[i] = evaluate(code, values[i]);
+                }
+        }
+    }
+
+    private static double logistic(double t) {
+        double position = (t + LOGISTIC_RANGE) * LOGISTIC_SCALE;
+        if (position <= 0) return LOGISTIC[0];
+        if (position >= INTERVALS) return LOGISTIC[INTERVALS];
+        int i = (int) position;
+        return LOGISTIC[i] + (position - i) * (LOGISTIC[i + 1] - LOGISTIC[i]);
+    }
+
+    /**
+     * @param s A non-negative value.
+     * @return exp(-s) from the table.
+     */
+    private static double expTable(double s) {
+        double position = s * EXP_SCALE;
+        if (position >= INTERVALS) return EXP[INTERVALS];
+        int i = (int) position;
+        return EXP[i] + (position - i) * (EXP[i + 1] - EXP[i]);
+    }
+
+    /**
+     * @param s A non-negative value.
+     * @return exp(-s) from the Pade approximant, 0 where the approximant of exp(-s / 16) turns negative.
+     */
+    private static double expRational(double s) {
+        double t = s * (1d / 16);
+        double r = Math.max(0, (120 - t * (60 - t * (12 - t))) / (120 + t * (60 + t * (12 + t))));
+        r *= r;
+        r *= r;
+        r *= r;
+        return r * r;
+    }
+}
@@ -0,0 +1,688 @@
+package model.network;
+
+import model.InnovationRegistry;
+import model.genes.Activation;
+import model.genes.Genome;
+import model.genes.NodeType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * The compiled phenotype of a genome.
+ * Nodes are stored in topological order and the enabled connections are flattened into primitive arrays,
+ * so that evaluating the network does not touch the gene objects and does not allocate.
+ * A network keeps its own activation values, so it must not be evaluated by two threads at the same time.
+ * <p>
+ * Recurrent connections are kept apart from the others. Every evaluation is a step of the network: the recurrent
+ * connections first read the activations left by the previous step, then the nodes are computed in topological order
+ * from the current step. The activations stay in the network between steps until {@link #reset()}, and a network
+ * without recurrent connections has no state.
+ * <p>
+ * Every computed node has its own activation function, computed as chosen by the {@link Approximation} of the run.
+ * The function and the approximation are combined into one code per node, evaluated by a single static switch.
+ * <p>
+ * The bias node has no slot: its value is always 1, so the weights of its connections are summed into a constant
+ * offset per computed node, which starts the sum of the node.
+ * <p>
+ * A network can be patched after a change of the genome that keeps its structure: the weight or the state of a
+ * connection, or the activation function of a node. The edges of every node keep room for its disabled connections
+ * and stay in the order of the connections of the genome, so a patched network computes exactly what a network
+ * compiled again would.
+ */
+public class Network {
+
+    /**
+     * The number of samples evaluated together by the batch methods, small enough for a block to stay in cache.
+     */
+    private static final int BATCH_BLOCK = 256;
+
+    /**
+     * The header of an exported network, "NNET" in little-endian order, followed by the version of the format.
+     */
+    public static final int EXPORT_MAGIC = 0x54454E4E;
+    public static final int EXPORT_VERSION = 4;
+
+    /**
+     * The slot of the bias node during compilation, which is not a slot of the network.
+     */
+    private static final int BIAS_SLOT = -2;
+
+    private static final byte FORWARD = 0;
+    private static final byte RECURRENT = 1;
+    private static final byte BIAS = 2;
+
+    private final int inputSize;
+    private final int outputSize;
+
+    /**
+     * The incoming edges of every computed node that read the current step. Computed node k is stored in slot
+     * inputSize + k.
+     */
+    private final Edges forward;
+    /**
+     * The recurrent incoming edges of every computed node, which read the previous step.
+     */
+    private final Edges recurrent;
+    /**
+     * The connections from the bias node to every computed node, whose sources are unused.
+     */
+    private final Edges biasEdges;
+    /**
+     * The sum of the weights of the connections from the bias node to every computed node.
+     */
+    private final double[] bias;
+    /**
+     * The activation function of every computed node as the ordinal of its {@link Activation}, and its code in the
+     * approximation of the network.
+     */
+    private final byte[] activations;
+    private final byte[] codes;
+    private final Approximation approximation;
+    /**
+     * For every connection of the genome, the computed node it leads to or -1 if it is not part of the network, the
+     * slot it reads and its group among {@link #FORWARD}, {@link #RECURRENT} and {@link #BIAS}.
+     */
+    private final int[] connectionTargets;
+    private final int[] connectionSources;
+    private final byte[] connectionGroups;
+    /**
+     * For every node of the genome, its computed node or -1 if it is not computed.
+     */
+    private final int[] nodeTargets;
+    private final int[] outputSlots;
+    private final double[] values;
+    /**
+     * The sums of the recurrent edges of every computed node, which stay at zero without recurrent edges.
+     */
+    private final double[] carried;
+    private double[] batchValues;
+    private int episodes;
+    private double[] episodeValues;
+    private double[] episodeCarried;
+
+    private Network(int inputSize, int[] outputSlots, Edges forward, Edges recurrent, Edges biasEdges,
+                    byte[] activations, Approximation approximation,
+                    int[] connectionTargets, int[] connectionSources, byte[] connectionGroups, int[] nodeTargets) {
+        this.inputSize = inputSize;
+        this.outputSize = outputSlots.length;
+        this.outputSlots = outputSlots;
+        this.forward = forward;
+        this.recurrent = recurrent;
+        this.biasEdges = biasEdges;
+        this.activations = activations;
+        this.approximation = approximation;
+        this.connectionTargets = connectionTargets;
+        this.connectionSources = connectionSources;
+        this.connectionGroups = connectionGroups;
+        this.nodeTargets = nodeTargets;
+        this.codes = new byte[activations.length];
+        for (int k = 0; k < codes.length; k++) {
+            codes[k] = approximation.code(Activation.of(activations[k]));
+        }
+        this.bias = new double[activations.length];
+        for (int k = 0; k < bias.length; k++) {
+            bias[k] = biasEdges.sum(k);
+        }
+        this.values = new double[inputSize + activations.length];
+        this.carried = new double[activations.length];
+    }
+
+    /**
+     * Builds the phenotype of a genome.
+     * Input nodes take the first slots in innovation order, the remaining nodes follow the cached
+     * topological order of the genome so that every node is computed after all of its sources, and the enabled
+     * connections of the bias node become the offsets of their targets.
+     * @param genome The genome to compile.
+     * @return The compiled network.
+     */
+    public static Network compile(Genome genome) {
+        InnovationRegistry registry = genome.getNeat().getRegistry();
+        int[] order = genome.getTopologicalOrder();
+        // Slots are indexed like the nodes of the genome, whose ids are sorted, rather than by id
+        int[] slots = new int[genome.getNodeCount()];
+        Arrays.fill(slots, -1);
+
+        int inputSize = 0;
+        int outputSize = 0;
+        int slotCount = 0;
+        for (int id : order) {
+            NodeType type = registry.getNode(id).getType();
+            if (type == NodeType.BIAS) {
+                slots[genome.indexOfNode(id)] = BIAS_SLOT;
+                continue;
+            }
+            if (type == NodeType.INPUT) {
+                inputSize++;
+            } else if (type == NodeType.OUTPUT) {
+                outputSize++;
+            }
+            slots[genome.indexOfNode(id)] = slotCount++;
+        }
+
+        // Group the incoming edges by target in topological order, making room for the disabled ones
+        int computed = slotCount - inputSize;
+        int connections = genome.getConnectionCount();
+        int[] connectionTargets = new int[connections];
+        int[] connectionSources = new int[connections];
+        byte[] connectionGroups = new byte[connections];
+        int[][] starts = new int[3][computed + 1];
+        for (int c = 0; c < connections; c++) {
+            int to = slot(genome, slots, genome.getToId(c));
+            int from = slot(genome, slots, genome.getFromId(c));
+            if (to < inputSize || from == -1) {
+                connectionTargets[c] = -1;
+                continue;
+            }
+            connectionTargets[c] = to - inputSize;
+            connectionSources[c] = from;
+            connectionGroups[c] = from == BIAS_SLOT ? BIAS : genome.isRecurrent(c) ? RECURRENT : FORWARD;
+            starts[connectionGroups[c]][to - inputSize + 1]++;
+        }
+
+        Edges[] groups = new Edges[3];
+        for (int g = 0; g < groups.length; g++) {
+            for (int i = 0; i < computed; i++) {
+                starts[g][i + 1] += starts[g][i];
+            }
+            groups[g] = new Edges(starts[g]);
+        }
+        for (int c = 0; c < connections; c++) {
+            if (connectionTargets[c] >= 0 && genome.isEnabled(c)) {
+                groups[connectionGroups[c]].append(connectionTargets[c], c, connectionSources[c], genome.getWeight(c));
+            }
+        }
+
+        int[] outputSlots = new int[outputSize];
+        byte[] activations = new byte[computed];
+        int[] nodeTargets = new int[genome.getNodeCount()];
+        int outputIndex = 0;
+        for (int i = 0; i < genome.getNodeCount(); i++) {
+            int id = genome.getNodeId(i);
+            if (registry.getNode(id).getType() == NodeType.OUTPUT) {
+                outputSlots[outputIndex++] = slots[i];
+            }
+            nodeTargets[i] = slots[i] >= inputSize ? slots[i] - inputSize : -1;
+            if (nodeTargets[i] >= 0) {
+                activations[nodeTargets[i]] = (byte) genome.getActivation(i).ordinal();
+            }
+        }
+
+        return new Network(inputSize, outputSlots, groups[FORWARD], groups[RECURRENT], groups[BIAS], activations,
+                genome.getNeat().getConfig().approximation(),
+                connectionTargets, connectionSources, connectionGroups, nodeTargets);
+    }
+
+    private static int slot(Genome genome, int[] slots, int id) {
+        int index = genome.indexOfNode(id);
+        return index < 0 ? -1 : slots[index];
+    }
+
+    /**
+     * Changes the weight of a connection of the compiled genome.
+     * @param connection The index of the connection in the genome.
+     * @param weight The new weight.
+     */
+    public void setWeight(int connection, double weight) {
+        int k = connectionTargets[connection];
+        if (k < 0) return;
+
+        Edges edges = group(connection);
+        int e = edges.find(k, connection);
+        if (e < 0) return;
+        edges.weights[e] = weight;
+        if (edges == biasEdges) {
+            bias[k] = biasEdges.sum(k);
+        }
+    }
+
+    /**
+     * Enables or disables a connection of the compiled genome.
+     * @param connection The index of the connection in the genome.
+     * @param enabled Whether the connection is enabled.
+     * @param weight The weight of the connection.
+     */
+    public void setEnabled(int connection, boolean enabled, double weight) {
+        int k = connectionTargets[connection];
+        if (k < 0) return;
+
+        Edges edges = group(connection);
+        if (enabled) {
+            edges.insert(k, connection, connectionSources[connection], weight);
+        } else {
+            edges.remove(k, connection);
+        }
+        if (edges == recurrent && recurrent.count == 0) {
+            // The sums are no longer computed at every step, so they must not keep the last ones
+            Arrays.fill(carried, 0);
+            if (episodeCarried != null) {
+                Arrays.fill(episodeCarried, 0);
+            }
+        } else if (edges == biasEdges) {
+            bias[k] = biasEdges.sum(k);
+        }
+    }
+
+    /**
+     * Changes the activation function of a node of the compiled genome.
+     * @param node The index of the node in the genome.
+     * @param activation The activation function.
+     */
+    public void setActivation(int node, Activation activation) {
+        int k = nodeTargets[node];
+        if (k < 0) return;
+
+        activations[k] = (byte) activation.ordinal();
+        codes[k] = approximation.code(activation);
+    }
+
+    private Edges group(int connection) {
+        return switch (connectionGroups[connection]) {
+            case FORWARD -> forward;
+            case RECURRENT -> recurrent;
+            default -> biasEdges;
+        };
+    }
+
+    /**
+     * Evaluates one step of the network without allocating.
+     * @param inputs The input values, one per input node in innovation order.
+     * @param outputs The buffer receiving one value per output node in innovation order.
+     */
+    public void calculateOutput(double[] inputs, double[] outputs) {
+        int computed = codes.length;
+        if (recurrent.count > 0) {
+            int[] recurrentStart = recurrent.start;
+            int[] recurrentEnd = recurrent.end;
+            int[] recurrentSources = recurrent.sources;
+            double[] recurrentWeights = recurrent.weights;
+            for (int k = 0; k < computed; k++) {
+                double sum = 0;
+                for (int e = recurrentStart[k]; e < recurrentEnd[k]; e++) {
+                    sum += recurrentWeights[e] * values[recurrentSources[e]];
+                }
+                carried[k] = sum;
+            }
+        }
+        System.arraycopy(inputs, 0, values, 0, Math.min(inputs.length, inputSize));
+
+        int[] edgeStart = forward.start;
+        int[] edgeEnd = forward.end;
+        int[] sources = forward.sources;
+        double[] weights = forward.weights;
+        for (int k = 0; k < computed; k++) {
+            double sum = bias[k] + carried[k];
+            for (int e = edgeStart[k]; e < edgeEnd[k]; e++) {
+                sum += weights[e] * values[sources[e]];
+            }
+            values[inputSize + k] = Approximation.evaluate(codes[k], sum);
+        }
+
+        for (int i = 0; i < outputSize; i++) {
+            outputs[i] = values[outputSlots[i]];
+        }
+    }
+
+    /**
+     * Evaluates the network on many independent samples at once without allocating after the first call.
+     * The samples are processed in blocks stored column by column, so that the inner loop runs over one edge
+     * for all the samples of the block, which the JIT compiles to vector instructions. Every sample is evaluated as
+     * the first step after a reset, so recurrent connections contribute nothing; see
+     * {@link #stepEpisodes(double[], double[], int)} to carry state.
+     * @param inputs The input values in row-major order, inputSize values per sample.
+     * @param outputs The buffer receiving the output values in row-major order, outputSize values per sample.
+     * @param rows The number of samples.
+     */
+    public void calculateOutputs(double[] inputs, double[] outputs, int rows) {
+        for (int offset = 0; offset < rows; offset += BATCH_BLOCK) {
+            int block = Math.min(BATCH_BLOCK, rows - offset);
+            double[] batch = getBatchValues();
+            for (int r = 0; r < block; r++) {
+                int row = (offset + r) * inputSize;
+                for (int i = 0; i < inputSize; i++) {
+                    batch[i * BATCH_BLOCK + r] = inputs[row + i];
+                }
+            }
+
+            propagateBlock(batch, block);
+
+            for (int r = 0; r < block; r++) {
+                int row = (offset + r) * outputSize;
+                for (int o = 0; o < outputSize; o++) {
+                    outputs[row + o] = batch[outputSlots[o] * BATCH_BLOCK + r];
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates the network on many samples at once without allocating after the first call.
+     * @param inputs The input values, one row per sample.
+     * @param outputs The buffer receiving the output values, one row per sample.
+     * @see #calculateOutputs(double[], double[], int)
+     */
+    public void calculateOutputs(double[][] inputs, double[][] outputs) {
+        for (int offset = 0; offset < inputs.length; offset += BATCH_BLOCK) {
+            int block = Math.min(BATCH_BLOCK, inputs.length - offset);
+            double[] batch = getBatchValues();
+            for (int r = 0; r < block; r++) {
+                double[] row = inputs[offset + r];
+                for (int i = 0; i < inputSize; i++) {
+                    batch[i * BATCH_BLOCK + r] = row[i];
+                }
+            }
+
+            propagateBlock(batch, block);
+
+            for (int r = 0; r < block; r++) {
+                double[] row = outputs[offset + r];
+                for (int o = 0; o < outputSize; o++) {
+                    row[o] = batch[outputSlots[o] * BATCH_BLOCK + r];
+                }
+            }
+        }
+    }
+
+    /**
+     * Evaluates one step of many independent episodes at once, without allocating as long as the number of episodes
+     * does not change. Every episode has its own activations, kept between calls until the number of episodes
+     * changes or the network is reset. The activations are stored column by column, like the blocks of
+     * {@link #calculateOutputs(double[], double[], int)}.
+     * @param inputs The input values of the step in row-major order, inputSize values per episode.
+     * @param outputs The buffer receiving the output values in row-major order, outputSize values per episode.
+     * @param episodes The number of episodes.
+     */
+    public void stepEpisodes(double[] inputs, double[] outputs, int episodes) {
+        if (episodes != this.episodes || episodeValues == null) {
+            this.episodes = episodes;
+            episodeValues = new double[values.length * episodes];
+            episodeCarried = new double[carried.length * episodes];
+        }
+        double[] state = episodeValues;
+
+        int computed = codes.length;
+        if (recurrent.count > 0) {
+            int[] recurrentStart = recurrent.start;
+            int[] recurrentEnd = recurrent.end;
+            int[] recurrentSources = recurrent.sources;
+            double[] recurrentWeights = recurrent.weights;
+            for (int k = 0; k < computed; k++) {
+                int target = k * episodes;
+                Arrays.fill(episodeCarried, target, target + episodes, 0);
+                for (int e = recurrentStart[k]; e < recurrentEnd[k]; e++) {
+                    double weight = recurrentWeights[e];
+                    int source = recurrentSources[e] * episodes;
+                    for (int r = 0; r < episodes; r++) {
+                        episodeCarried[target + r] += weight * state[source + r];
+                    }
+                }
+            }
+        }
+        for (int r = 0; r < episodes; r++) {
+            for (int i = 0; i < inputSize; i++) {
+                state[i * episodes + r] = inputs[r * inputSize + i];
+            }
+        }
+
+        int[] edgeStart = forward.start;
+        int[] edgeEnd = forward.end;
+        int[] sources = forward.sources;
+        double[] weights = forward.weights;
+        for (int k = 0; k < computed; k++) {
+            int target = (inputSize + k) * episodes;
+            double offset = bias[k];
+            for (int r = 0; r < episodes; r++) {
+                state[target + r] = offset + episodeCarried[k * episodes + r];
+            }
+            for (int e = edgeStart[k]; e < edgeEnd[k]; e++) {
+                double weight = weights[e];
+                int source = sources[e] * episodes;
+                for (int r = 0; r < episodes; r++) {
+                    state[target + r] += weight * state[source + r];
+                }
+            }
+            Approximation.evaluate(codes[k], state, target, target + episodes);
+        }
+
+        for (int r = 0; r < episodes; r++) {
+            for (int o = 0; o < outputSize; o++) {
+                outputs[r * outputSize + o] = state[outputSlots[o] * episodes + r];
+            }
+        }
+    }
+
+    /**
+     * Clears the activations of all the episodes and of the single steps, so that the next step starts from zero.
+     */
+    public void reset() {
+        Arrays.fill(values, 0);
+        if (episodeValues != null) {
+            Arrays.fill(episodeValues, 0);
+        }
+    }
+
+    /**
+     * Clears the activations of one episode of {@link #stepEpisodes(double[], double[], int)}, for instance when it
+     * ends before the others and starts again.
+     * @param episode The index of the episode.
+     */
+    public void resetEpisode(int episode) {
+        if (episodeValues == null) return;
+        for (int slot = 0; slot < values.length; slot++) {
+            episodeValues[slot * episodes + episode] = 0;
+        }
+    }
+
+    /**
+     * @return True if the network has enabled recurrent connections, and therefore keeps state between steps.
+     */
+    public boolean isRecurrent() {
+        return recurrent.count > 0;
+    }
+
+    private void propagateBlock(double[] batch, int block) {
+        int computed = codes.length;
+        int[] edgeStart = forward.start;
+        int[] edgeEnd = forward.end;
+        int[] sources = forward.sources;
+        double[] weights = forward.weights;
+        for (int k = 0; k < computed; k++) {
+            int target = (inputSize + k) * BATCH_BLOCK;
+            Arrays.fill(batch, target, target + block, bias[k]);
+            for (int e = edgeStart[k]; e < edgeEnd[k]; e++) {
+                double weight = weights[e];
+                int source = sources[e] * BATCH_BLOCK;
+                for (int r = 0; r < block; r++) {
+                    batch[target + r] += weight * batch[source + r];
+                }
+            }
+            Approximation.evaluate(codes[k], batch, target, target + block);
+        }
+    }
+
+    /**
+     * Encodes this network in a self-contained format that can be evaluated without any class of the model,
+     * for instance by {@code runtime.InferenceNetwork}.
+     * <p>
+     * The format is little-endian: the magic number and version, then the input size, the output size, the number of
+     * computed nodes, the number of edges and the number of recurrent edges as ints, followed by the output slots,
+     * the edge starts, the edge sources, the recurrent edge starts, the recurrent edge sources and the activation of
+     * every computed node as the ordinal of its {@link Activation} as ints, and the edge weights, the recurrent edge
+     * weights and the bias offset of every computed node as doubles. The approximation is not exported, the functions
+     * are meant to be computed exactly. An encoded network knows its own length, so several networks can be written
+     * one after the other to the same stream.
+     * @return A buffer holding the encoded network, ready to be read.
+     */
+    public ByteBuffer export() {
+        int computed = codes.length;
+        int edges = forward.count;
+        int recurrentEdges = recurrent.count;
+        int ints = outputSize + 2 * (computed + 1) + edges + recurrentEdges + computed;
+        ByteBuffer buffer = ByteBuffer.allocate(4 * (7 + ints) + 8 * (edges + recurrentEdges + computed))
+                .order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(EXPORT_MAGIC).putInt(EXPORT_VERSION);
+        buffer.putInt(inputSize).putInt(outputSize).putInt(computed).putInt(edges).putInt(recurrentEdges);
+        IntBuffer view = buffer.asIntBuffer().put(outputSlots);
+        forward.putStarts(view);
+        forward.putSources(view);
+        recurrent.putStarts(view);
+        recurrent.putSources(view);
+        for (byte activation : activations) {
+            view.put(activation);
+        }
+        buffer.position(buffer.position() + 4 * ints);
+        DoubleBuffer doubles = buffer.asDoubleBuffer();
+        forward.putWeights(doubles);
+        recurrent.putWeights(doubles);
+        doubles.put(bias);
+        return buffer.clear();
+    }
+
+    /**
+     * Writes this network to a channel in the format of {@link #export()}.
+     * @param channel The channel, which is not closed.
+     * @throws IOException If the channel cannot be written.
+     */
+    public void export(WritableByteChannel channel) throws IOException {
+        ByteBuffer buffer = export();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private double[] getBatchValues() {
+        if (batchValues == null) {
+            batchValues = new double[values.length * BATCH_BLOCK];
+        }
+        return batchValues;
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    /**
+     * The incoming edges of every computed node in one group of connections. The enabled edges of computed node k
+     * are start[k] to end[k], in the order of their connections in the genome, and the range up to start[k + 1] is
+     * kept for its disabled connections, so that enabling or disabling a connection only moves edges of its target.
+     */
+    private static final class Edges {
+
+        final int[] start;
+        final int[] end;
+        final int[] sources;
+        final double[] weights;
+        /**
+         * The index in the genome of the connection of every edge, increasing within the range of a node.
+         */
+        final int[] connections;
+        int count;
+
+        Edges(int[] start) {
+            int capacity = start[start.length - 1];
+            this.start = start;
+            this.end = Arrays.copyOf(start, start.length - 1);
+            this.sources = new int[capacity];
+            this.weights = new double[capacity];
+            this.connections = new int[capacity];
+        }
+
+        /**
+         * Adds an edge after the others of its target, for connections added in the order of the genome.
+         */
+        void append(int k, int connection, int source, double weight) {
+            set(end[k]++, connection, source, weight);
+            count++;
+        }
+
+        /**
+         * Adds an edge at its place among the others of its target, unless it is already there.
+         */
+        void insert(int k, int connection, int source, double weight) {
+            int e = Arrays.binarySearch(connections, start[k], end[k], connection);
+            if (e >= 0) return;
+
+            e = -e - 1;
+            int moved = end[k] - e;
+            System.arraycopy(sources, e, sources, e + 1, moved);
+            System.arraycopy(weights, e, weights, e + 1, moved);
+            System.arraycopy(connections, e, connections, e + 1, moved);
+            set(e, connection, source, weight);
+            end[k]++;
+            count++;
+        }
+
+        /**
+         * Removes an edge, if it is there, keeping the order of the others.
+         */
+        void remove(int k, int connection) {
+            int e = find(k, connection);
+            if (e < 0) return;
+
+            int moved = end[k] - e - 1;
+            System.arraycopy(sources, e + 1, sources, e, moved);
+            System.arraycopy(weights, e + 1, weights, e, moved);
+            System.arraycopy(connections, e + 1, connections, e, moved);
+            end[k]--;
+            count--;
+        }
+
+        /**
+         * @return The position of the edge of a connection, or -1 if it is disabled.
+         */
+        int find(int k, int connection) {
+            int e = Arrays.binarySearch(connections, start[k], end[k], connection);
+            return e >= 0 ? e : -1;
+        }
+
+        /**
+         * @return The sum of the weights of the edges of a node, added in order.
+         */
+        double sum(int k) {
+            double sum = 0;
+            for (int e = start[k]; e < end[k]; e++) {
+                sum += weights[e];
+            }
+            return sum;
+        }
+
+        private void set(int e, int connection, int source, double weight) {
+            sources[e] = source;
+            weights[e] = weight;
+            connections[e] = connection;
+        }
+
+        /**
+         * Writes the starts of the ranges of the enabled edges, as if there were no room for the disabled ones.
+         */
+        void putStarts(IntBuffer view) {
+            int offset = 0;
+            view.put(offset);
+            for (int k = 0; k < end.length; k++) {
+                offset += end[k] - start[k];
+                view.put(offset);
+            }
+        }
+
+        void putSources(IntBuffer view) {
+            for (int k = 0; k < end.length; k++) {
+                view.put(sources, start[k], end[k] - start[k]);
+            }
+        }
+
+        void putWeights(DoubleBuffer view) {
+            for (int k = 0; k < end.length; k++) {
+                view.put(weights, start[k], end[k] - start[k]);
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package model.remote;
+
+import model.Individual;
+import model.Neat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Scores populations on worker processes, such as {@code runtime.EvaluationWorker}, connected over loopback sockets.
+ * <p>
+ * The phenotype of every individual is compiled and exported when the population is submitted, and sent to the
+ * workers in batches. Every connected worker takes the next batch as soon as it answered the previous one, so fast
+ * workers score more batches than slow ones. A worker that does not answer a batch within the timeout, or whose
+ * connection fails, is dropped and its batch goes back to the front of the queue, until it has been tried the given
+ * number of times. The evaluation then fails. It also fails when no worker takes or answers any of its batches for
+ * twice the timeout, for instance because no worker is connected or the last one was dropped.
+ * <p>
+ * {@link #evolvePopulation(Neat)} submits a population and evolves it at once, so that the speciation of the next
+ * generation runs while the workers score the last batches.
+ */
+public class EvaluationCoordinator implements AutoCloseable {
+
+    private final ServerSocket server;
+    private final int batchSize;
+    private final int timeoutMillis;
+    private final int attempts;
+    private final BlockingDeque<Batch> queue = new LinkedBlockingDeque<>();
+    private final Set<Socket> workers = ConcurrentHashMap.newKeySet();
+    private final ExecutorService threads = Executors.newCachedThreadPool(EvaluationCoordinator::newThread);
+    private final ScheduledExecutorService timer =
+            Executors.newSingleThreadScheduledExecutor(EvaluationCoordinator::newThread);
+    private final AtomicInteger retries = new AtomicInteger();
+
+    /**
+     * Listens for workers on a loopback port.
+     * @param port The port, or 0 for any free port.
+     * @param batchSize The number of individuals sent to a worker at once.
+     * @param timeout The time a worker has to score a batch, from sending it to reading the last score.
+     * @param attempts The number of times a batch is sent before the evaluation fails.
+     * @throws IOException If the port cannot be bound.
+     */
+    public EvaluationCoordinator(int port, int batchSize, Duration timeout, int attempts) throws IOException {
+        if (batchSize <= 0 || attempts <= 0) {
+            throw new IllegalArgumentException("The batch size and the number of attempts must be positive");
+        }
+        this.server = new ServerSocket(port, 64, InetAddress.getLoopbackAddress());
+        this.batchSize = batchSize;
+        this.timeoutMillis = (int) Math.min(Integer.MAX_VALUE, Math.max(1, timeout.toMillis()));
+        this.attempts = attempts;
+        threads.execute(this::accept);
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    /**
+     * @return The number of workers currently connected.
+     */
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    /**
+     * @return The number of batches sent again after a timeout or a lost worker.
+     */
+    public int getRetries() {
+        return retries.get();
+    }
+
+    /**
+     * Sends individuals to the workers. Their phenotypes are exported before this method returns, so the genomes may
+     * change afterwards, and their scores are set before the returned future completes.
+     * @param individuals The individuals to score.
+     * @return A future completed once every individual is scored, or completed exceptionally if a batch failed.
+     */
+    public CompletableFuture<Void> submit(List<Individual> individuals) {
+        Job job = new Job(List.copyOf(individuals));
+        if (individuals.isEmpty()) {
+            job.future.complete(null);
+            return job.future;
+        }
+
+        for (int offset = 0; offset < individuals.size(); offset += batchSize) {
+            int size = Math.min(batchSize, individuals.size() - offset);
+            byte[][] networks = new byte[size][];
+            for (int i = 0; i < size; i++) {
+                networks[i] = individuals.get(offset + i).getGenome().getNetwork().export().array();
+            }
+            queue.addLast(new Batch(job, offset, networks));
+        }
+
+        // Fails the job if no worker makes progress on it, which would otherwise leave it waiting forever
+        long stall = 2L * timeoutMillis;
+        ScheduledFuture<?> watch = timer.scheduleWithFixedDelay(() -> {
+            if (job.isStalled()) {
+                queue.removeIf(batch -> batch.job == job);
+                job.future.completeExceptionally(
+                        new TimeoutException("No worker scored a batch for " + stall + " ms"));
+            }
+        }, stall, stall, TimeUnit.MILLISECONDS);
+        job.future.whenComplete((result, failure) -> watch.cancel(false));
+        return job.future;
+    }
+
+    /**
+     * Scores a population on the workers and waits for all the scores.
+     * @param neat The population.
+     * @throws IllegalStateException If the evaluation fails.
+     */
+    public void evaluatePopulation(Neat neat) {
+        try {
+            submit(neat.getIndividuals()).join();
+        } catch (RuntimeException e) {
+            throw new IllegalStateException("The evaluation of the population failed", e.getCause());
+        }
+    }
+
+    /**
+     * Scores a population on the workers and evolves it into the next generation, the speciation running while the
+     * workers score the population.
+     * @param neat The population, which must not have been evaluated yet.
+     * @throws IllegalStateException If the evaluation fails.
+     * @see Neat#evolvePopulation(java.util.concurrent.Future)
+     */
+    public void evolvePopulation(Neat neat) {
+        neat.evolvePopulation(submit(neat.getIndividuals()));
+    }
+
+    private void accept() {
+        while (!server.isClosed()) {
+            try {
+                Socket socket = server.accept();
+                workers.add(socket);
+                threads.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // Closed by close(), or a connection that failed before being accepted
+            }
+        }
+    }
+
+    /**
+     * Sends batches to a worker until it fails or the coordinator is closed.
+     */
+    private void serve(Socket socket) {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                Batch batch = queue.takeFirst();
+                if (batch.job.future.isDone()) continue;
+                batch.job.progress.incrementAndGet();
+
+                // Bounds the whole exchange rather than every read, closing the socket to interrupt it
+                ScheduledFuture<?> deadline = timer.schedule(() -> close(socket), timeoutMillis, TimeUnit.MILLISECONDS);
+                try {
+                    out.writeInt(batch.networks.length);
+                    for (byte[] network : batch.networks) {
+                        out.writeInt(network.length);
+                        out.write(network);
+                    }
+                    out.flush();
+
+                    if (in.readInt() != batch.networks.length) {
+                        throw new IOException("The worker answered with the wrong number of scores");
+                    }
+                    double[] scores = new double[batch.networks.length];
+                    for (int i = 0; i < scores.length; i++) {
+                        scores[i] = in.readDouble();
+                    }
+                    deadline.cancel(false);
+                    batch.job.complete(batch.offset, scores);
+                } catch (IOException e) {
+                    deadline.cancel(false);
+                    retry(batch, deadline.isCancelled() ? e : new SocketTimeoutException(
+                            "The worker did not score the batch within " + timeoutMillis + " ms"));
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            // Closed by close()
+        } catch (IOException e) {
+            // The connection failed before any batch was sent
+        } finally {
+            workers.remove(socket);
+        }
+    }
+
+    private void retry(Batch batch, IOException cause) {
+        batch.job.progress.incrementAndGet();
+        if (++batch.attempts >= attempts) {
+            batch.job.future.completeExceptionally(
+                    new IOException("A batch failed " + batch.attempts + " times", cause));
+        } else {
+            retries.incrementAndGet();
+            queue.addFirst(batch);
+        }
+    }
+
+    private static void close(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // The worker is dropped either way
+        }
+    }
+
+    private static Thread newThread(Runnable task) {
+        Thread thread = new Thread(task, "neat-coordinator");
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * Disconnects the workers and stops listening. Pending evaluations never complete.
+     */
+    @Override
+    public void close() throws IOException {
+        server.close();
+        threads.shutdownNow();
+        timer.shutdownNow();
+        for (Socket socket : workers) {
+            socket.close();
+        }
+    }
+
+    /**
+     * The evaluation of a list of individuals, whose scores are set once all of its batches are scored.
+     */
+    private static final class Job {
+
+        private final List<Individual> individuals;
+        private final double[] scores;
+        private final AtomicInteger remaining;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        private final AtomicLong progress = new AtomicLong();
+        private long checkedProgress;
+
+        Job(List<Individual> individuals) {
+            this.individuals = individuals;
+            this.scores = new double[individuals.size()];
+            this.remaining = new AtomicInteger(individuals.size());
+        }
+
+        /**
+         * @return True if none of the batches was taken, answered or failed since the last call.
+         */
+        boolean isStalled() {
+            long current = progress.get();
+            boolean stalled = current == checkedProgress;
+            checkedProgress = current;
+            return stalled;
+        }
+
+        void complete(int offset, double[] batchScores) {
+            progress.incrementAndGet();
+            System.arraycopy(batchScores, 0, scores, offset, batchScores.length);
+            if (remaining.addAndGet(-batchScores.length) == 0) {
+                for (int i = 0; i < scores.length; i++) {
+                    individuals.get(i).setScore(scores[i]);
+                }
+                future.complete(null);
+            }
+        }
+    }
+
+    private static final class Batch {
+
+        private final Job job;
+        private final int offset;
+        private final byte[][] networks;
+        private int attempts;
+
+        Batch(Job job, int offset, byte[][] networks) {
+            this.job = job;
+            this.offset = offset;
+            this.networks = networks;
+        }
+    }
+}
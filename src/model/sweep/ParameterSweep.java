@@ -0,0 +1,109 @@
+package model.sweep;
+
+import model.Individual;
+import model.Neat;
+import model.NeatConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Evolves one population per configuration, all of them at the same time on a shared pool.
+ * <p>
+ * Every population has its own registry, generator and species, so the configurations do not influence each other,
+ * and the run of a configuration is the same as if it ran alone with the same seed. The populations are tasks of the
+ * pool and their parallel phases are subtasks of the same pool, so the worker threads move between populations
+ * instead of being split between them.
+ */
+public class ParameterSweep {
+
+    private final int inputSize;
+    private final int outputSize;
+    private final int individuals;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param inputSize The number of input nodes.
+     * @param outputSize The number of output nodes.
+     * @param individuals The size of every population.
+     * @param pool The pool shared by all the populations.
+     */
+    public ParameterSweep(int inputSize, int outputSize, int individuals, ForkJoinPool pool) {
+        if (individuals <= 0) {
+            throw new IllegalArgumentException("The size of the populations must be positive");
+        }
+        this.inputSize = inputSize;
+        this.outputSize = outputSize;
+        this.individuals = individuals;
+        this.pool = pool;
+    }
+
+    /**
+     * Evolves a population per configuration until it reaches the target score or the number of generations.
+     * @param configs The configurations.
+     * @param fitness The fitness function, called concurrently by all the populations.
+     * @param generations The largest number of generations of a population.
+     * @param targetScore The score at which a population stops evolving.
+     * @param seed The seed from which the seeds of the populations are drawn, in the order of the configurations.
+     * @return The result of every configuration, in the order of the configurations.
+     */
+    public List<Result> run(List<NeatConfig> configs, ToDoubleFunction<Individual> fitness,
+                            int generations, double targetScore, long seed) {
+        SplittableRandom seeds = new SplittableRandom(seed);
+        List<ForkJoinTask<Result>> tasks = new ArrayList<>();
+        for (NeatConfig config : configs) {
+            long populationSeed = seeds.nextLong();
+            tasks.add(pool.submit(() -> evolve(config, populationSeed, fitness, generations, targetScore)));
+        }
+
+        List<Result> results = new ArrayList<>();
+        for (ForkJoinTask<Result> task : tasks) {
+            results.add(task.join());
+        }
+        return results;
+    }
+
+    private Result evolve(NeatConfig config, long seed, ToDoubleFunction<Individual> fitness,
+                          int generations, double targetScore) {
+        Neat neat = new Neat(inputSize, outputSize, individuals, config, new Neat.Options().pool(pool).seed(seed));
+        Individual best = null;
+        int generation = 0;
+        while (true) {
+            neat.evaluatePopulation(fitness);
+            for (Individual individual : neat.getIndividuals()) {
+                if (best == null || individual.getScore() > best.getScore()) {
+                    best = copy(individual);
+                }
+            }
+            if (best.getScore() >= targetScore || generation == generations) break;
+            neat.evolvePopulation();
+            generation++;
+        }
+        return new Result(config, seed, generation, best.getScore(), best);
+    }
+
+    /**
+     * The individuals of a population are reused by the next generations, so the best one is kept as a copy.
+     */
+    private static Individual copy(Individual individual) {
+        Individual copy = new Individual();
+        copy.setGenome(individual.getGenome().copy(individual.getGenome().getNeat()));
+        copy.setScore(individual.getScore());
+        return copy;
+    }
+
+    /**
+     * The outcome of a configuration.
+     * @param config The configuration.
+     * @param seed The seed of its population.
+     * @param generations The number of generations evolved.
+     * @param bestScore The best score reached.
+     * @param best A copy of the best individual.
+     */
+    public record Result(NeatConfig config, long seed, int generations, double bestScore, Individual best) {
+    }
+}
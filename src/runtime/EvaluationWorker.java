@@ -0,0 +1,102 @@
+package runtime;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Scores networks sent by an evaluation coordinator, typically from a separate process on the same machine.
+ * <p>
+ * A worker connects to the coordinator and answers batches until the coordinator closes the connection. A batch is
+ * the number of networks followed by each network as its length and its bytes in the format of
+ * {@link InferenceNetwork}, and the answer is the number of scores followed by one double per network, in order.
+ * Several connections may be opened to the same coordinator to score batches in parallel.
+ */
+public class EvaluationWorker {
+
+    private final ToDoubleFunction<InferenceNetwork> fitness;
+
+    /**
+     * @param fitness The fitness function, called with one network at a time by each connection.
+     */
+    public EvaluationWorker(ToDoubleFunction<InferenceNetwork> fitness) {
+        this.fitness = fitness;
+    }
+
+    /**
+     * Answers the batches of a coordinator on the loopback interface until it closes the connection.
+     * @param port The port of the coordinator.
+     * @throws IOException If the connection fails.
+     */
+    public void run(int port) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            while (true) {
+                int count;
+                try {
+                    count = in.readInt();
+                } catch (EOFException e) {
+                    return;
+                }
+
+                double[] scores = new double[count];
+                byte[] network = new byte[0];
+                for (int i = 0; i < count; i++) {
+                    int length = in.readInt();
+                    if (network.length < length) network = new byte[length];
+                    in.readFully(network, 0, length);
+                    scores[i] = fitness.applyAsDouble(InferenceNetwork.read(ByteBuffer.wrap(network, 0, length)));
+                }
+
+                out.writeInt(count);
+                for (double score : scores) {
+                    out.writeDouble(score);
+                }
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Runs a worker process.
+     * @param args The port of the coordinator, the name of a class implementing
+     *             {@code ToDoubleFunction<InferenceNetwork>} with a public constructor without arguments,
+     *             and optionally the number of connections, one by default.
+     * @throws Exception If the fitness function cannot be created or a connection fails.
+     */
+    @SuppressWarnings("unchecked")
+    public static void main(String[] args) throws Exception {
+        int port = Integer.parseInt(args[0]);
+        Class<?> type = Class.forName(args[1]);
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 1;
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            EvaluationWorker worker = new EvaluationWorker(
+                    (ToDoubleFunction<InferenceNetwork>) type.getConstructor().newInstance());
+            Thread thread = new Thread(() -> {
+                try {
+                    worker.run(port);
+                } catch (IOException e) {
+                    System.err.println("Connection to the coordinator lost: " + e.getMessage());
+                }
+            }, "neat-worker-" + i);
+            thread.start();
+            threads.add(thread);
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+}
@@ -0,0 +1,262 @@
+package runtime;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Evaluates a network exported by {@code model.network.Network#export()} without any class of the model.
+ * <p>
+ * The network is loaded into flat arrays: nodes are in topological order, inputs first, and each computed node sums
+ * its bias offset and its weighted incoming edges before applying its activation function exactly: the steepened
+ * sigmoid, tanh, the rectifier, the identity or the gaussian, in the order of {@code model.genes.Activation}.
+ * Every evaluation is a step: recurrent edges read the activations of the previous step, kept until {@link #reset()}.
+ * An instance keeps its own activation values, so it must not be evaluated by two threads at the same time;
+ * {@link #copy()} shares the arrays of the network with a new buffer for another thread.
+ */
+public final class InferenceNetwork {
+
+    private static final int MAGIC = 0x54454E4E;
+    private static final int VERSION = 4;
+    private static final int HEADER = 28;
+    private static final int SIGMOID = 0;
+    private static final int TANH = 1;
+    private static final int RELU = 2;
+    private static final int IDENTITY = 3;
+    private static final int GAUSSIAN = 4;
+
+    private final int inputSize;
+    private final int[] outputSlots;
+    private final int[] edgeStart;
+    private final int[] sources;
+    private final double[] weights;
+    private final int[] recurrentStart;
+    private final int[] recurrentSources;
+    private final double[] recurrentWeights;
+    private final double[] bias;
+    private final int[] activations;
+    private final double[] values;
+    private final double[] carried;
+
+    private InferenceNetwork(int inputSize, int[] outputSlots, int[] edgeStart, int[] sources, double[] weights,
+                             int[] recurrentStart, int[] recurrentSources, double[] recurrentWeights,
+                             double[] bias, int[] activations) {
+        this.inputSize = inputSize;
+        this.outputSlots = outputSlots;
+        this.edgeStart = edgeStart;
+        this.sources = sources;
+        this.weights = weights;
+        this.recurrentStart = recurrentStart;
+        this.recurrentSources = recurrentSources;
+        this.recurrentWeights = recurrentWeights;
+        this.bias = bias;
+        this.activations = activations;
+        this.values = new double[inputSize + edgeStart.length - 1];
+        this.carried = new double[edgeStart.length - 1];
+    }
+
+    /**
+     * Reads a network from a buffer, leaving the buffer after the network so that the next one can be read.
+     * @param buffer The buffer.
+     * @return The network.
+     * @throws IllegalArgumentException If the buffer does not hold an exported network.
+     */
+    public static InferenceNetwork read(ByteBuffer buffer) {
+        ByteBuffer in = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        if (in.remaining() < HEADER || in.getInt() != MAGIC) {
+            throw new IllegalArgumentException("Not an exported network");
+        }
+        int version = in.getInt();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported network version " + version);
+        }
+
+        int inputSize = in.getInt();
+        int outputSize = in.getInt();
+        int computed = in.getInt();
+        int edges = in.getInt();
+        int recurrentEdges = in.getInt();
+        if (inputSize < 0 || outputSize < 0 || computed < 0 || edges < 0 || recurrentEdges < 0
+                || in.remaining() < length(outputSize, computed, edges, recurrentEdges) - HEADER) {
+            throw new IllegalArgumentException("Truncated network");
+        }
+
+        int[] outputSlots = new int[outputSize];
+        int[] edgeStart = new int[computed + 1];
+        int[] sources = new int[edges];
+        double[] weights = new double[edges];
+        int[] recurrentStart = new int[computed + 1];
+        int[] recurrentSources = new int[recurrentEdges];
+        double[] recurrentWeights = new double[recurrentEdges];
+        double[] bias = new double[computed];
+        int[] activations = new int[computed];
+        in.asIntBuffer().get(outputSlots).get(edgeStart).get(sources).get(recurrentStart).get(recurrentSources)
+                .get(activations);
+        in.position(in.position() + 4 * (outputSize + 2 * (computed + 1) + edges + recurrentEdges + computed));
+        in.asDoubleBuffer().get(weights).get(recurrentWeights).get(bias);
+        in.position(in.position() + 8 * (edges + recurrentEdges + computed));
+
+        validate(inputSize, outputSlots, edgeStart, sources, false);
+        validate(inputSize, outputSlots, recurrentStart, recurrentSources, true);
+        for (int activation : activations) {
+            if (activation < 0 || activation > GAUSSIAN) throw new IllegalArgumentException("Unknown activation");
+        }
+        buffer.position(buffer.position() + in.position());
+        return new InferenceNetwork(inputSize, outputSlots, edgeStart, sources, weights,
+                recurrentStart, recurrentSources, recurrentWeights, bias, activations);
+    }
+
+    private static long length(int outputSize, int computed, int edges, int recurrentEdges) {
+        return HEADER + 4L * (outputSize + 2L * (computed + 1) + edges + recurrentEdges + computed)
+                + 8L * (edges + recurrentEdges + computed);
+    }
+
+    /**
+     * Reads the next network from a channel.
+     * @param channel The channel, which is not closed.
+     * @return The network.
+     * @throws IOException If the channel cannot be read or does not hold an exported network.
+     */
+    public static InferenceNetwork read(ReadableByteChannel channel) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER).order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, header);
+        int outputSize = header.getInt(12);
+        int computed = header.getInt(16);
+        int edges = header.getInt(20);
+        int recurrentEdges = header.getInt(24);
+        long length = length(outputSize, computed, edges, recurrentEdges);
+        if (outputSize < 0 || computed < 0 || edges < 0 || recurrentEdges < 0 || length > Integer.MAX_VALUE) {
+            throw new IOException("Not an exported network");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) length);
+        buffer.put(header.flip());
+        readFully(channel, buffer);
+        try {
+            return read(buffer.flip());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Reads a network exported to a file.
+     * @param file The file.
+     * @return The network.
+     * @throws IOException If the file cannot be read or does not hold an exported network.
+     */
+    public static InferenceNetwork read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel);
+        }
+    }
+
+    private static void readFully(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) throw new EOFException("Truncated network");
+        }
+    }
+
+    /**
+     * Checks that every edge reads a node computed before its target, or any node for recurrent edges, so that
+     * evaluating cannot fail.
+     */
+    private static void validate(int inputSize, int[] outputSlots, int[] edgeStart, int[] sources, boolean recurrent) {
+        int computed = edgeStart.length - 1;
+        if (edgeStart[0] != 0 || edgeStart[computed] != sources.length) {
+            throw new IllegalArgumentException("Malformed network");
+        }
+        for (int k = 0; k < computed; k++) {
+            if (edgeStart[k + 1] < edgeStart[k]) throw new IllegalArgumentException("Malformed network");
+            for (int e = edgeStart[k]; e < edgeStart[k + 1]; e++) {
+                if (sources[e] < 0 || sources[e] >= inputSize + (recurrent ? computed : k)) {
+                    throw new IllegalArgumentException("Malformed network");
+                }
+            }
+        }
+        for (int slot : outputSlots) {
+            if (slot < 0 || slot >= inputSize + computed) throw new IllegalArgumentException("Malformed network");
+        }
+    }
+
+    /**
+     * Evaluates one step of the network without allocating.
+     * @param inputs The input values, one per input node.
+     * @param outputs The buffer receiving one value per output node.
+     */
+    public void evaluate(double[] inputs, double[] outputs) {
+        int computed = edgeStart.length - 1;
+        if (recurrentSources.length > 0) {
+            for (int k = 0; k < computed; k++) {
+                double sum = 0;
+                for (int e = recurrentStart[k]; e < recurrentStart[k + 1]; e++) {
+                    sum += recurrentWeights[e] * values[recurrentSources[e]];
+                }
+                carried[k] = sum;
+            }
+        }
+        System.arraycopy(inputs, 0, values, 0, Math.min(inputs.length, inputSize));
+
+        for (int k = 0; k < computed; k++) {
+            double sum = bias[k] + carried[k];
+            for (int e = edgeStart[k]; e < edgeStart[k + 1]; e++) {
+                sum += weights[e] * values[sources[e]];
+            }
+            values[inputSize + k] = activate(activations[k], sum);
+        }
+
+        for (int i = 0; i < outputSlots.length; i++) {
+            outputs[i] = values[outputSlots[i]];
+        }
+    }
+
+    private static double activate(int activation, double x) {
+        switch (activation) {
+            case SIGMOID:
+                return 1d / (1 + Math.exp(-4.9 * x));
+            case TANH:
+                return Math.tanh(x);
+            case RELU:
+                return Math.max(0, x);
+            case IDENTITY:
+                return x;
+            default:
+                return Math.exp(-x * x);
+        }
+    }
+
+    public double[] evaluate(double[] inputs) {
+        double[] outputs = new double[outputSlots.length];
+        evaluate(inputs, outputs);
+        return outputs;
+    }
+
+    /**
+     * Clears the activations, so that the next step starts from zero.
+     */
+    public void reset() {
+        Arrays.fill(values, 0);
+    }
+
+    /**
+     * @return A network sharing the arrays of this one, with its own activation values.
+     */
+    public InferenceNetwork copy() {
+        return new InferenceNetwork(inputSize, outputSlots, edgeStart, sources, weights,
+                recurrentStart, recurrentSources, recurrentWeights, bias, activations);
+    }
+
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    public int getOutputSize() {
+        return outputSlots.length;
+    }
+}
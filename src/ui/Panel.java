@@ -38,6 +38,8 @@ public class Panel extends JPanel {
             g.setColor(Color.BLUE);
         } else if (n.getType() == NodeType.OUTPUT) {
             g.setColor(Color.WHITE);
+        } else if (n.getType() == NodeType.BIAS) {
+            g.setColor(Color.ORANGE);
         } else {
             g.setColor(Color.GRAY);
         }